@@ -0,0 +1,103 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.xfy.tipviewmanager.triangle.BubbleDrawable;
+import com.xfy.tipviewmanager.triangle.TopTriangleDrawable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 静止及动画中的tip重复绘制时不创建对象
+ */
+@RunWith(AndroidJUnit4.class)
+public class TipDrawAllocationTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 160;
+    private static final int DRAW_COUNT = 1000;
+
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void tearDown() {
+        bitmap.recycle();
+    }
+
+    @Test
+    public void drawTipWithTriangle() {
+        final NormalTip tip = newTip();
+        tip.setTipBackgroundDrawable(new ColorDrawable(Color.BLACK));
+        tip.setTriangleDrawable(new TopTriangleDrawable());
+        layoutAndShow(tip);
+        assertEquals(0, countDrawAllocations(tip));
+    }
+
+    @Test
+    public void drawTipWithBubble() {
+        final NormalTip tip = newTip();
+        tip.setBubbleDrawable(new BubbleDrawable());
+        layoutAndShow(tip);
+        assertEquals(0, countDrawAllocations(tip));
+    }
+
+    @Test
+    public void drawTranslatedTip() {
+        final NormalTip tip = newTip();
+        tip.setBubbleDrawable(new BubbleDrawable());
+        layoutAndShow(tip);
+        tip.setTranslateXY(10, 10);
+        assertEquals(0, countDrawAllocations(tip));
+    }
+
+    private static NormalTip newTip() {
+        final NormalTip tip = new NormalTip();
+        tip.setNeedAnimation(false);
+        tip.setTipText("tip draw allocation");
+        tip.setTipTextSize(36);
+        tip.setTipTextColor(Color.WHITE);
+        tip.setTipTextPadding(20, 10, 20, 10);
+        tip.setTriangleDirection(ITip.Triangle.TOP);
+        return tip;
+    }
+
+    private static void layoutAndShow(NormalTip tip) {
+        tip.applyLayout(0, 0, WIDTH, HEIGHT, 0);
+        tip.show();
+    }
+
+    /**
+     * 先绘制几次建立测量及路径缓存，再统计之后绘制中创建的对象个数
+     */
+    @SuppressWarnings("deprecation")
+    private int countDrawAllocations(NormalTip tip) {
+        for (int i = 0; i < 10; i++) {
+            tip.draw(canvas);
+        }
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < DRAW_COUNT; i++) {
+            tip.draw(canvas);
+        }
+        Debug.stopAllocCounting();
+        final int count = Debug.getThreadAllocCount();
+        Debug.resetThreadAllocCount();
+        return count;
+    }
+}
@@ -8,8 +8,7 @@ import android.support.annotation.Nullable;
 import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewParent;
-import android.view.ViewTreeObserver;
+import android.view.Window;
 import android.view.WindowManager;
 
 import com.xfy.tipviewmanager.anim.DefaultTipAnimation;
@@ -19,18 +18,25 @@ import com.xfy.tipviewmanager.tip.IAdvancedTip;
 import com.xfy.tipviewmanager.tip.ITextDelegate;
 import com.xfy.tipviewmanager.tip.ITip;
 import com.xfy.tipviewmanager.tip.NormalTip;
+import com.xfy.tipviewmanager.tip.TipAnchor;
+import com.xfy.tipviewmanager.tip.TipPool;
 import com.xfy.tipviewmanager.tip.TipViewLayout;
+import com.xfy.tipviewmanager.triangle.BubbleDrawable;
 import com.xfy.tipviewmanager.triangle.BottomTriangleDrawable;
 import com.xfy.tipviewmanager.triangle.LeftTriangleDrawable;
 import com.xfy.tipviewmanager.triangle.RightTriangleDrawable;
 import com.xfy.tipviewmanager.triangle.TopTriangleDrawable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Created by XiongFangyu on 2017/6/21.
  *
  * tip管理类，承载tip的view是{@link TipViewLayout}，每个Activity实例绑定一个{@link TipViewLayout}，
+ * {@link TipViewLayout}在显示第一个tip时才添加到布局中，
+ * 需要显示在Dialog等其他窗口之上时，调用{@link #bindWindow(Window)}，
  * 内部维护一个对象池，对应每个Activity实例和{@link TipManager}。
  * 调用{@link #bindActivity(Activity)}获取{@link TipManager}对象；不使用时(eg: 在{@link Activity#onDestroy()})
  * 调用{@link #unbindActivity(Activity)}释放{@link TipManager}对象并清除对象池中相应的Activity
@@ -40,27 +46,41 @@ import java.util.HashMap;
  *
  * 设置项:
  *  {@link #setNeedTipAnim(boolean)}    设置显示或隐藏tip时是否需要动画
+ *  {@link #setAnimationSnapshot(boolean)}  设置动画时是否使用bitmap快照
  *  {@link #setTipAnimation(ITipAnimation)} 设置动画具体实现，默认{@link DefaultTipAnimation}
- *  {@link #setBackground(Drawable)}    设置背景
- *  {@link #setTriangles(Drawable, Drawable, Drawable, Drawable)}   设置4个位置的三角形
+ *  {@link #setBubbleColor(int)}       改为使用背景和三角形合一的气泡，并设置颜色
+ *  {@link #setBackground(Drawable)}    设置背景，设置后不再使用默认气泡
+ *  {@link #setTriangles(Drawable, Drawable, Drawable, Drawable)}   设置4个位置的三角形，设置后不再使用默认气泡
  *  {@link #setTextSize(float)}         设置文字大小
  *  {@link #setTextColor(int)}          设置文字颜色
  *  {@link #setTextPadding(int, int, int, int)} 设置文字周围边距
  *  {@link #setMarginEdge(int)}         设置tip距离屏幕最小边距
  *  {@link #setTouchToHideAll(boolean)} 设置点击隐藏所有tip
+ *  {@link #setDismissPolicy(int)}      设置tip默认的手势隐藏策略
  *  {@link #setTouchHideNeedNotfiy(boolean)} 设置点击隐藏是否产生回调
  *  {@link #setHandleTouchEevnt(boolean)}   设置是否消耗手势事件（是否点击穿透）
+ *  {@link #setTrackAnchor(boolean)}    设置tip是否跟随指向的view移动
+ *  {@link #setCullInvisibleAnchor(boolean)}    设置是否挂起指向的view不可见的tip
+ *  {@link #setAvoidOverlap(boolean)}   设置是否避免tip之间重叠
+ *  {@link #setLayerAnimation(boolean)}    设置动画时是否使用每个tip一个子view加硬件层
+ *  {@link #setRecordStaticTips(boolean)}  设置是否录制静止的tip
  *
  * tip与{@link View}对象相对应，一个{@link View}对象只能有一个tip，TipManager内部维护一个对象池，来实现{@link View}和tip一一对应
  * 显示tip时将从对象池中寻找相对应的tip，若没找到，则新建一个tip对象，若找到，使用已有tip对象，然后设置相应的文字及位置，并显示
  *
  * {@link #showTipView(View, CharSequence, int)}    显示tip
+ * {@link #showTipViewDelay(View, CharSequence, int, long)}    延时显示tip
+ * {@link #showTipViews(List)}                      批量显示tip
+ * {@link #showTipView(TipAnchor, CharSequence, int)}   显示指向非view目标的tip
  * {@link #showAdvancedTip(View, CharSequence, ITextDelegate, int)}     显示高级tip {@link IAdvancedTip}
  * {@link #hideTipView(View)}                       隐藏tip
  * {@link #isTipShowing(View)}                      tip是否显示
  * {@link #removeTipView(View)}                     删除tip
+ * {@link #setBatchMutations(boolean)}             批量模式，同一帧内的操作合并后统一执行
  * {@link #hideTipLayout()}                         隐藏tip layout
  * {@link #showTipLayout()}                         显示tip layout 默认显示
+ *
+ * 删除的tip及解绑时的所有tip由{@link TipPool}回收复用，可调用{@link TipPool#prewarm(int)}在空闲时预先创建
  */
 public class TipManager {
     private static boolean DEBUG = false;
@@ -69,9 +89,9 @@ public class TipManager {
         DEBUG = debug;
     }
     /**
-     * 维护单一Activity对应单一TipManager的对象池
+     * 维护单一Activity(或{@link Window})对应单一TipManager的对象池
      */
-    private static HashMap<Activity, TipManager> Pool;
+    private static HashMap<Object, TipManager> Pool;
 
     /**
      * 绑定一个Activity对象，若已经绑定过，则返回之前绑定的{@link TipManager}对象
@@ -81,19 +101,80 @@ public class TipManager {
      * @return 和Activity对象对应的 {@link TipManager}对象
      */
     public static TipManager bindActivity(Activity activity, ViewGroup container) {
+        return bindActivity(activity, container, TipViewLayout.Host.LAYOUT);
+    }
+
+    /**
+     * 绑定一个Activity对象，若已经绑定过，则返回之前绑定的{@link TipManager}对象
+     * 若没绑定，则创建一个新的对象，并保存到对象池中
+     * @param activity
+     * @param container
+     * @param hostMode  tip的承载方式 see {@link TipViewLayout.Host}
+     * @return 和Activity对象对应的 {@link TipManager}对象
+     */
+    public static TipManager bindActivity(Activity activity, ViewGroup container, @TipViewLayout.HostMode int hostMode) {
         TipManager tipManager = findTipManager(activity);
         if (tipManager != null) {
             return tipManager;
         }
+        //显示第一个tip时才添加到container中
         TipViewLayout tipViewLayout = new TipViewLayout(activity);
-        container.addView(tipViewLayout, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-                ViewGroup.LayoutParams.MATCH_PARENT));
+        tipViewLayout.setHostContainer(container, hostMode);
         tipManager = new TipManager(tipViewLayout);
-        tipManager.initActivityParams(activity);
+        if (hostMode == TipViewLayout.Host.WINDOW) {
+            //子窗口坐标即为父窗口坐标，不需要减去状态栏高度
+            tipManager.statusHeight = 0;
+        } else {
+            tipManager.initActivityParams(activity);
+        }
         saveToPool(activity, tipManager);
         return tipManager;
     }
 
+    /**
+     * 绑定一个窗口(eg: Dialog的窗口)，tip以{@link TipViewLayout.Host#WINDOW}方式显示在此窗口之上
+     * 若已经绑定过，则返回之前绑定的{@link TipManager}对象
+     * 窗口移除(eg: Dialog dismiss)时自动解除绑定，之前返回的对象不再可用，再次显示时需重新绑定；
+     * 也可调用{@link #unbindWindow(Window)}提前解除
+     * @param window
+     * @return 和窗口对应的 {@link TipManager}对象
+     */
+    public static TipManager bindWindow(final Window window) {
+        TipManager tipManager = findTipManager(window);
+        if (tipManager != null) {
+            return tipManager;
+        }
+        final ViewGroup decor = (ViewGroup) window.getDecorView();
+        TipViewLayout tipViewLayout = new TipViewLayout(window.getContext());
+        tipViewLayout.setHostContainer(decor, TipViewLayout.Host.WINDOW);
+        tipManager = new TipManager(tipViewLayout);
+        tipManager.statusHeight = 0;
+        //对象池为静态的，忘记解绑时会一直持有窗口及Activity
+        tipManager.autoUnbindView = decor;
+        tipManager.autoUnbindListener = new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View v) {
+            }
+
+            @Override
+            public void onViewDetachedFromWindow(View v) {
+                unbindWindow(window);
+            }
+        };
+        decor.addOnAttachStateChangeListener(tipManager.autoUnbindListener);
+        saveToPool(window, tipManager);
+        return tipManager;
+    }
+
+    /**
+     * 解除和窗口绑定的{@link TipManager}对象，并释放资源
+     * 所有tip被{@link TipPool}回收，不可再使用之前返回的tip对象
+     * @param window
+     */
+    public static void unbindWindow(Window window) {
+        unbind(window);
+    }
+
     /**
      * 绑定一个Activity对象，若已经绑定过，则返回之前绑定的{@link TipManager}对象
      * 若没绑定，则创建一个新的对象，并保存到对象池中
@@ -101,46 +182,102 @@ public class TipManager {
      * @return 和Activity对象对应的 {@link TipManager}对象
      */
     public static TipManager bindActivity(Activity activity) {
+        return bindActivity(activity, TipViewLayout.Host.LAYOUT);
+    }
+
+    /**
+     * 绑定一个Activity对象，若已经绑定过，则返回之前绑定的{@link TipManager}对象
+     * 若没绑定，则创建一个新的对象，并保存到对象池中
+     * @param activity
+     * @param hostMode  tip的承载方式 see {@link TipViewLayout.Host}
+     *                  {@link TipViewLayout.Host#OVERLAY}时tip绘制在根布局的overlay中，不额外增加全屏的view
+     *                  {@link TipViewLayout.Host#WINDOW}时tip显示在子窗口中，可显示在Dialog等窗口之上
+     * @return 和Activity对象对应的 {@link TipManager}对象
+     */
+    public static TipManager bindActivity(Activity activity, @TipViewLayout.HostMode int hostMode) {
         ViewGroup container = (ViewGroup) activity.findViewById(android.R.id.content);
-        return bindActivity(activity, container);
+        return bindActivity(activity, container, hostMode);
     }
 
     /**
      * 解除和activity对象绑定的{@link TipManager}对象，并释放资源
+     * 所有tip被{@link TipPool}回收，不可再使用之前返回的tip对象
      * @param activity
      */
     public static void unbindActivity(Activity activity) {
+        unbind(activity);
+    }
+
+    private static void unbind(Object key) {
         if (Pool != null) {
-            TipManager tipManager = Pool.remove(activity);
+            TipManager tipManager = Pool.remove(key);
             if (tipManager != null) {
                 tipManager.release();
             }
         }
     }
 
-    private static TipManager findTipManager(Activity activity) {
+    private static TipManager findTipManager(Object key) {
         if (Pool != null) {
-            return Pool.get(activity);
+            return Pool.get(key);
         }
         return null;
     }
 
-    private static void saveToPool(Activity activity, TipManager tipManager) {
+    private static void saveToPool(Object key, TipManager tipManager) {
         if (Pool == null)
             Pool = new HashMap<>();
-        Pool.put(activity, tipManager);
+        Pool.put(key, tipManager);
     }
 
     private TipViewLayout tipViewLayout;
-    private HashMap<View, ITip> tips;
+    /**
+     * {@link #bindWindow(Window)}时监听窗口移除，自动解除绑定
+     */
+    private View autoUnbindView;
+    private View.OnAttachStateChangeListener autoUnbindListener;
+    /**
+     * 以{@link View}或{@link TipAnchor}为key
+     */
+    private HashMap<Object, ITip> tips;
     private float textSize;
     private int textColor;
     private Rect textPadding;
     private Drawable background;
     private Drawable[] triangles;
+    /**
+     * 调用{@link #setBubbleColor(int)}后使用背景和三角形合一的气泡，之前为空；
+     * 调用{@link #setBackground(Drawable)}或{@link #setTriangles(Drawable, Drawable, Drawable, Drawable)}后
+     * 重新使用设置的drawable
+     */
+    private BubbleDrawable bubble;
+    private boolean useBubble = false;
+    private int backgroundRadiu;
     private int statusHeight = -404;
     private boolean needTipAnim = true;
     private ITipAnimation tipAnimation;
+    /**
+     * see {@link #setAnimationSnapshot(boolean)}
+     */
+    private boolean animationSnapshot = false;
+
+    /**
+     * 批量模式下的操作队列，为空表示未开启批量模式
+     * see {@link #setBatchMutations(boolean)}
+     */
+    private TipMutationQueue mutationQueue;
+    /**
+     * 等待view layout完成的队列
+     * see {@link #checkViewCanShowTip(View, ViewAvalableListener)}
+     */
+    private TipPendingQueue pendingQueue;
+
+    private final Rect tempViewRect = new Rect();
+    private final int[] tempLocation = new int[2];
+    /**
+     * 批量显示时各view的位置
+     */
+    private final ArrayList<Rect> specRects = new ArrayList<>();
 
     public TipManager(TipViewLayout tipViewLayout) {
         this.tipViewLayout = tipViewLayout;
@@ -174,6 +311,8 @@ public class TipManager {
 
     /**
      * 检查view是否已经layout并measure了
+     * 若没有，加入等待队列，在view有宽高后的第一次绘制前回调，同一帧中可用的view在同一次刷新中统一回调
+     * 可调用{@link #cancelViewCanShowTip(View)}取消
      * @param targetView
      * @param avalableListener
      */
@@ -181,19 +320,12 @@ public class TipManager {
         if (tipViewLayout == null)
             return;
         if (targetView.getWidth() == 0 || targetView.getHeight() == 0) {
-            targetView.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-                @Override
-                public void onGlobalLayout() {
-                    targetView.getViewTreeObserver().removeGlobalOnLayoutListener(this);
-                    if (tipViewLayout == null)
-                        return;
-                    if (targetView.getWidth() == 0 || targetView.getHeight() == 0)
-                        return;
-                    if (avalableListener != null) {
-                        avalableListener.onViewAvalable(targetView);
-                    }
-                }
-            });
+            if (pendingQueue == null)
+                pendingQueue = new TipPendingQueue(this);
+            View owner = tipViewLayout.getHostContainer();
+            //在等待期间完成布局，绘制前显示tip时不会晚一帧
+            tipViewLayout.prepareHost();
+            pendingQueue.add(targetView, avalableListener, owner != null ? owner : targetView);
         } else {
             if (avalableListener != null) {
                 avalableListener.onViewAvalable(targetView);
@@ -201,10 +333,20 @@ public class TipManager {
         }
     }
 
+    /**
+     * 取消{@link #checkViewCanShowTip(View, ViewAvalableListener)}中targetView的等待
+     * @param targetView
+     */
+    public void cancelViewCanShowTip(View targetView) {
+        if (pendingQueue != null) {
+            pendingQueue.cancel(targetView);
+        }
+    }
+
     /**
      * 显示和targetView对应的tip，若{@link #tips}中不包含对应tip，则创建一个tip，并保存
      * 若包含，且tip为{@link IAdvancedTip}，删除并重新创建
-     * 若包含，且tip为{@link NormalTip}，则使用已有tip，然后通过{@link #initTip(View, ITip, CharSequence, int)}设置tip的位置及其他信息
+     * 若包含，且tip为{@link NormalTip}，则使用已有tip，然后通过{@link #initTip(View, ITip, CharSequence, int, int, int)}设置tip的位置及其他信息
      * 并显示
      * @param targetView    需要显示tip指向的view
      * @param text          tip中的文字
@@ -218,7 +360,7 @@ public class TipManager {
     /**
      * 显示和targetView对应的tip，若{@link #tips}中不包含对应tip，则创建一个tip，并保存
      * 若包含，且tip为{@link IAdvancedTip}，删除并重新创建
-     * 若包含，且tip为{@link NormalTip}，则使用已有tip，然后通过{@link #initTip(View, ITip, CharSequence, int)}设置tip的位置及其他信息
+     * 若包含，且tip为{@link NormalTip}，则使用已有tip，然后通过{@link #initTip(View, ITip, CharSequence, int, int, int)}设置tip的位置及其他信息
      * 并显示
      * @param targetView    需要显示tip指向的view
      * @param text          tip中的文字
@@ -230,29 +372,152 @@ public class TipManager {
     public
     @Nullable
     ITip showTipView(View targetView, CharSequence text, int preTx, int preTy, @ITip.TriangleDirection int direction) {
+        return showTipView(targetView, text, preTx, preTy, direction, 0);
+    }
+
+    /**
+     * 延时显示和targetView对应的tip，tip的位置在调用时确定
+     * 延时期间再次调用{@link #showTipView(View, CharSequence, int)}或{@link #hideTipView(View)}会取消延时显示
+     * @param targetView    需要显示tip指向的view
+     * @param text          tip中的文字
+     * @param direction     三角形指向方向 see {@link ITip.Triangle}
+     * @param delay         延时，单位ms
+     * @return null if released
+     */
+    public @Nullable ITip showTipViewDelay(View targetView, CharSequence text, @ITip.TriangleDirection int direction, long delay) {
+        return showTipView(targetView, text, 0, 0, direction, delay);
+    }
+
+    private
+    @Nullable
+    ITip showTipView(View targetView, CharSequence text, int preTx, int preTy, @ITip.TriangleDirection int direction, long delay) {
         if (tipViewLayout == null)
             return null;
         ITip tip = findTip(targetView);
+        if (mutationQueue != null && !(tip instanceof IAdvancedTip)) {
+            if (tip == null) {
+                tip = TipPool.obtainNormalTip();
+                saveTip(targetView, tip);
+            }
+            mutationQueue.show(targetView, text, preTx, preTy, direction, delay);
+            //返回的tip还未布局，对其调用的autoHide等记录下来，队列执行时再应用
+            ((NormalTip) tip).setDeferred(true);
+            return tip;
+        }
+        return showTipViewNow(targetView, text, preTx, preTy, direction, delay);
+    }
+
+    /**
+     * 批量显示tip，所有tip在同一次刷新中显示，适用于同时显示多个tip的情况
+     * 批量模式下({@link #setBatchMutations(boolean)})加入操作队列
+     * @param specs 每个tip的描述 see {@link TipSpec}
+     */
+    public void showTipViews(List<TipSpec> specs) {
+        if (tipViewLayout == null || specs == null || specs.isEmpty())
+            return;
+        if (mutationQueue != null) {
+            for (int i = 0, l = specs.size(); i < l; i++) {
+                TipSpec spec = specs.get(i);
+                showTipView(spec.targetView, spec.text, spec.preTx, spec.preTy, spec.direction, 0);
+            }
+            return;
+        }
+        final int count = specs.size();
+        //先读取所有view的位置，再统一布局，读取位置时不会穿插tip的布局和刷新
+        final ArrayList<Rect> rects = specRects;
+        for (int i = rects.size(); i < count; i++) {
+            rects.add(new Rect());
+        }
+        for (int i = 0; i < count; i++) {
+            getViewRect(specs.get(i).targetView, rects.get(i));
+        }
+        //所有tip在同一批中布局，批结束时只处理一次重叠、刷新一次
+        tipViewLayout.beginInvalidateBatch();
+        for (int i = 0; i < count; i++) {
+            TipSpec spec = specs.get(i);
+            ITip tip = obtainTip(spec.targetView);
+            Rect viewRect = rects.get(i);
+            initTipStyle(tip, spec.text, spec.preTx, spec.preTy, spec.direction, viewRect);
+            tipViewLayout.addTip(tip, spec.targetView, viewRect, spec.preTx, spec.preTy, getLayoutDirection(tip, spec.direction));
+            tip.showDelay(0);
+        }
+        tipViewLayout.endInvalidateBatch();
+    }
+
+    private ITip showTipViewNow(View targetView, CharSequence text, int preTx, int preTy, @ITip.TriangleDirection int direction, long delay) {
+        ITip tip = obtainTip(targetView);
+        Rect viewRect = initTip(targetView, tip, text, preTx, preTy, direction);
+        tipViewLayout.addTip(tip, targetView, viewRect, preTx, preTy, getLayoutDirection(tip, direction));
+        tip.showDelay(delay);
+        return tip;
+    }
+
+    /**
+     * 获取targetView对应的普通tip，没有时从回收池中取出，并设置动画
+     */
+    private ITip obtainTip(View targetView) {
+        ITip tip = findTip(targetView);
         if (tip != null && tip instanceof IAdvancedTip) {
-            removeTipView(targetView);
+            removeTipViewNow(targetView);
             tip = null;
         }
         if (tip == null) {
-            tip = new NormalTip();
+            tip = TipPool.obtainNormalTip();
             saveTip(targetView, tip);
         }
         tip.setNeedAnimation(needTipAnim)
                 .setTipAnimation(tipAnimation);
-        Rect viewRect = initTip(targetView, tip, text, direction);
-        tipViewLayout.addTip(tip, viewRect, preTx, preTy, direction);
+        return tip;
+    }
+
+    /**
+     * 显示指向anchor的tip，anchor可以是自定义view中绘制的某个区域(eg: 图表中的点)
+     * 配合{@link #setTrackAnchor(boolean)}，anchor位置改变时tip每一帧跟随移动，不需要重新显示
+     * 不受批量模式({@link #setBatchMutations(boolean)})影响
+     * @param anchor        tip指向的目标 see {@link TipAnchor}
+     * @param text          tip中的文字
+     * @param direction     三角形指向方向 see {@link ITip.Triangle}
+     * @return null if released
+     */
+    public @Nullable ITip showTipView(TipAnchor anchor, CharSequence text, @ITip.TriangleDirection int direction) {
+        if (tipViewLayout == null)
+            return null;
+        ITip tip = findTip(anchor);
+        if (tip == null) {
+            tip = TipPool.obtainNormalTip();
+            saveTip(anchor, tip);
+        }
+        tip.setNeedAnimation(needTipAnim)
+                .setTipAnimation(tipAnimation);
+        Rect viewRect = initTip(anchor, tip, text, direction);
+        tipViewLayout.addTip(tip, anchor, viewRect, 0, 0, getLayoutDirection(tip, direction));
         tip.show();
         return tip;
     }
 
+    /**
+     * 隐藏指向anchor的tip
+     * @param anchor
+     */
+    public void hideTipView(TipAnchor anchor) {
+        ITip tip = findTip(anchor);
+        if (tip != null) {
+            tip.hide();
+        }
+    }
+
+    /**
+     * 删除指向anchor的tip
+     * @param anchor
+     */
+    public void removeTipView(TipAnchor anchor) {
+        removeTipViewNow(anchor);
+    }
+
     /**
      * 显示和targetView对应的{@link IAdvancedTip}，若{@link #tips}中对应的tip不是{@link IAdvancedTip}，
      * 则删除并重新创建；若{@link #tips}中不包含对应tip，则创建一个{@link AdvancedTip}
-     * 通过{@link #initTip(View, ITip, CharSequence, int)}设置tip的位置及其他信息
+     * 通过{@link #initTip(View, ITip, CharSequence, int, int, int)}设置tip的位置及其他信息
      * @param targetView    需要显示tip指向的view
      * @param text          tip中的文字
      * @param textDelegate  文字调整器，如果为空，还不如用{@link #showTipView(View, CharSequence, int)}
@@ -267,7 +532,7 @@ public class TipManager {
     /**
      * 显示和targetView对应的{@link IAdvancedTip}，若{@link #tips}中对应的tip不是{@link IAdvancedTip}，
      * 则删除并重新创建；若{@link #tips}中不包含对应tip，则创建一个{@link AdvancedTip}
-     * 通过{@link #initTip(View, ITip, CharSequence, int)}设置tip的位置及其他信息
+     * 通过{@link #initTip(View, ITip, CharSequence, int, int, int)}设置tip的位置及其他信息
      * @param targetView    需要显示tip指向的view
      * @param text          tip中的文字
      * @param preTx         布局此tip时x移动距离
@@ -282,22 +547,25 @@ public class TipManager {
                                  @Nullable ITextDelegate textDelegate, @ITip.TriangleDirection int direction) {
         if (tipViewLayout == null)
             return null;
+        if (mutationQueue != null) {
+            mutationQueue.cancel(targetView);
+        }
         ITip tip = findTip(targetView);
         if (tip != null) {
             if (!(tip instanceof IAdvancedTip)) {
-                removeTipView(targetView);
+                removeTipViewNow(targetView);
                 tip = null;
             }
         }
         if (tip == null) {
-            tip = new AdvancedTip();
+            tip = TipPool.obtainAdvancedTip();
             saveTip(targetView, tip);
         }
         tip.setNeedAnimation(needTipAnim)
                 .setTipAnimation(tipAnimation);
         ((IAdvancedTip) tip).setTextDelegate(textDelegate);
-        Rect viewRect = initTip(targetView, tip, text, direction);
-        tipViewLayout.addTip(tip, viewRect, preTx, preTy, direction);
+        Rect viewRect = initTip(targetView, tip, text, preTx, preTy, direction);
+        tipViewLayout.addTip(tip, targetView, viewRect, preTx, preTy, getLayoutDirection(tip, direction));
         tip.show();
         return (IAdvancedTip) tip;
     }
@@ -307,6 +575,10 @@ public class TipManager {
      * @param targetView
      */
     public void hideTipView(View targetView) {
+        if (mutationQueue != null) {
+            mutationQueue.hide(targetView);
+            return;
+        }
         ITip tip = findTip(targetView);
         if (tip != null) {
             tip.hide();
@@ -314,18 +586,144 @@ public class TipManager {
     }
 
     /**
-     * 删除对应tip
+     * 删除对应tip，删除后tip会被{@link TipPool}回收，不可再使用之前返回的tip对象
      * @param targetView
      */
     public void removeTipView(View targetView) {
+        if (mutationQueue != null) {
+            mutationQueue.remove(targetView);
+            return;
+        }
+        removeTipViewNow(targetView);
+    }
+
+    private void removeTipViewNow(Object key) {
         if (tipViewLayout == null || tips == null)
             return;
-        ITip tip = tips.remove(targetView);
+        ITip tip = tips.remove(key);
         if (tip != null) {
             tipViewLayout.removeTip(tip);
+            TipPool.recycle(tip);
+        }
+    }
+
+    /**
+     * 设置对应tip三角形的偏移
+     * @param targetView
+     * @param margin see {@link ITip#setTriangleMargin(int)}
+     */
+    public void setTriangleMargin(View targetView, int margin) {
+        if (mutationQueue != null) {
+            mutationQueue.setTriangleMargin(targetView, margin);
+            return;
+        }
+        ITip tip = findTip(targetView);
+        if (tip != null) {
+            tip.setTriangleMargin(margin);
+        }
+    }
+
+    /**
+     * 设置是否开启批量模式
+     * 开启后{@link #showTipView}、{@link #hideTipView(View)}、{@link #removeTipView(View)}、
+     * {@link #setTriangleMargin(View, int)}不会立即执行，而是在下一帧统一执行，
+     * 同一个view在一帧中的多次操作合并为一次，以最后一次为准
+     * 适用于滑动过程中频繁显示、隐藏tip的情况
+     * 关闭时立即执行所有未执行的操作
+     * @param batch true: 开启
+     * @return this object
+     */
+    public TipManager setBatchMutations(boolean batch) {
+        if (batch) {
+            if (mutationQueue == null)
+                mutationQueue = new TipMutationQueue(this);
+        } else if (mutationQueue != null) {
+            TipMutationQueue queue = mutationQueue;
+            mutationQueue = null;
+            queue.flush();
+        }
+        return this;
+    }
+
+    /**
+     * 批量模式下，立即执行所有未执行的操作
+     */
+    public void flushMutations() {
+        if (mutationQueue != null) {
+            mutationQueue.flush();
+        }
+    }
+
+    /**
+     * 由{@link TipMutationQueue}调用，执行合并后的操作
+     */
+    void applyMutation(View targetView, TipMutationQueue.Mutation m) {
+        if (tipViewLayout == null)
+            return;
+        //应用显示在队列中时对tip的调用
+        final ITip deferredTip = findTip(targetView);
+        final NormalTip nt = deferredTip instanceof NormalTip ? (NormalTip) deferredTip : null;
+        boolean hidden = false;
+        long delay = m.delay;
+        long autoHide = -1;
+        if (nt != null) {
+            hidden = nt.isDeferredHide();
+            if (nt.getDeferredShowDelay() >= 0)
+                delay = nt.getDeferredShowDelay();
+            autoHide = nt.getDeferredAutoHide();
+            nt.setDeferred(false);
+        }
+        switch (m.op) {
+            case TipMutationQueue.SHOW:
+                if (hidden) {
+                    //显示前已被隐藏，合并为一次隐藏
+                    if (nt.isShowing())
+                        nt.hide();
+                    break;
+                }
+                final ITip shown = showTipViewNow(targetView, m.text, m.preTx, m.preTy, m.direction, delay);
+                if (autoHide > 0)
+                    shown.autoHide(autoHide);
+                break;
+            case TipMutationQueue.HIDE:
+                ITip tip = findTip(targetView);
+                if (tip != null) {
+                    tip.hide();
+                }
+                break;
+            case TipMutationQueue.REMOVE:
+                removeTipViewNow(targetView);
+                return;
+        }
+        if (m.hasTriangleMargin) {
+            ITip tip = findTip(targetView);
+            if (tip != null) {
+                tip.setTriangleMargin(m.triangleMargin);
+            }
         }
     }
 
+    void beginInvalidateBatch() {
+        if (tipViewLayout != null)
+            tipViewLayout.beginInvalidateBatch();
+    }
+
+    void endInvalidateBatch() {
+        if (tipViewLayout != null)
+            tipViewLayout.endInvalidateBatch();
+    }
+
+    /**
+     * 等待队列为空时调用，没有显示tip时移除提前添加的view
+     */
+    void onPendingQueueEmpty() {
+        if (tipViewLayout != null)
+            tipViewLayout.releaseHostIfIdle();
+    }
+
+    /**
+     * 删除activity对应的所有tip，tip被{@link TipPool}回收，不可再使用之前返回的tip对象
+     */
     public static void removewAllTipView(Activity activity) {
         if (activity == null) {
             return;
@@ -334,12 +732,16 @@ public class TipManager {
         if (tipManager == null) {
             return;
         }
-        HashMap<View, ITip> tips = tipManager.tips;
+        if (tipManager.mutationQueue != null) {
+            tipManager.mutationQueue.clear();
+        }
+        HashMap<Object, ITip> tips = tipManager.tips;
         if (tips != null && !tips.isEmpty()) {
-            for (View view : tips.keySet()) {
-                ITip tip = tips.get(view);
+            for (Object key : tips.keySet()) {
+                ITip tip = tips.get(key);
                 if (tip != null && tipManager.tipViewLayout != null) {
                     tipManager.tipViewLayout.removeTip(tip);
+                    TipPool.recycle(tip);
                 }
             }
             tips.clear();
@@ -364,6 +766,69 @@ public class TipManager {
         }
     }
 
+    /**
+     * 设置tip是否跟随指向的view移动
+     * 开启后每一帧绘制前检查tip指向的view的位置，只移动位置改变了的tip，
+     * 适用于ScrollView、RecyclerView等滑动的布局，不需要在滑动时隐藏tip
+     * @param track true: 跟随
+     * @return this object
+     */
+    public TipManager setTrackAnchor(boolean track) {
+        if (tipViewLayout != null)
+            tipViewLayout.setTrackAnchor(track);
+        return this;
+    }
+
+    /**
+     * 设置是否挂起指向的view不可见的tip
+     * 开启后tip指向的view从窗口移除、隐藏或滑出屏幕时，tip不绘制，动画及自动隐藏暂停，
+     * view重新可见时恢复，不需要重新创建tip
+     * @param cull true: 挂起
+     * @return this object
+     */
+    public TipManager setCullInvisibleAnchor(boolean cull) {
+        if (tipViewLayout != null)
+            tipViewLayout.setCullInvisibleAnchor(cull);
+        return this;
+    }
+
+    /**
+     * 设置是否避免同时显示的tip之间重叠
+     * 开启后重叠的tip会在允许的方向上移动，三角形仍指向对应的view
+     * @param avoid true: 避免重叠
+     * @return this object
+     */
+    public TipManager setAvoidOverlap(boolean avoid) {
+        if (tipViewLayout != null)
+            tipViewLayout.setAvoidOverlap(avoid);
+        return this;
+    }
+
+    /**
+     * 设置是否将静止的tip录制下来，其他view引起重绘时只回放录制内容
+     * 每个tip会额外保存一份录制内容，默认关闭
+     * @param record true: 录制
+     * @return this object
+     */
+    public TipManager setRecordStaticTips(boolean record) {
+        if (tipViewLayout != null)
+            tipViewLayout.setRecordStaticTips(record);
+        return this;
+    }
+
+    /**
+     * 设置显示隐藏动画时是否使用每个tip一个子view加硬件层
+     * 动画期间tip内容只绘制一次，每帧只改变view属性；动画仍由主线程推进
+     * {@link TipViewLayout.Host#OVERLAY}模式下不生效
+     * @param enable true: 开启
+     * @return this object
+     */
+    public TipManager setLayerAnimation(boolean enable) {
+        if (tipViewLayout != null)
+            tipViewLayout.setLayerAnimation(enable);
+        return this;
+    }
+
     /**
      * 设置是否消耗手势事件（是否点击穿透）
      * @param handle    true 消耗（点击不穿透）
@@ -385,6 +850,18 @@ public class TipManager {
         return this;
     }
 
+    /**
+     * 设置tip动画时是否使用bitmap快照
+     * 开启后动画期间每帧只绘制一张bitmap，不再分别绘制背景、文字及三角形，适合低端机
+     * bitmap在进程内复用，动画结束或内存紧张时释放
+     * @param snapshot true: 使用快照
+     * @return this object
+     */
+    public TipManager setAnimationSnapshot(boolean snapshot) {
+        this.animationSnapshot = snapshot;
+        return this;
+    }
+
     /**
      * 设置tip显隐动画的具体实现
      * 默认为{@link DefaultTipAnimation}
@@ -403,6 +880,23 @@ public class TipManager {
      */
     public TipManager setBackground(Drawable background) {
         this.background = background;
+        useBubble = false;
+        return this;
+    }
+
+    /**
+     * 使用背景和三角形合一的气泡代替背景及三角形drawable，并设置气泡颜色
+     * 之后显示的tip使用新的颜色，已显示的tip不变，再次显示时更新
+     * 调用{@link #setBackground(Drawable)}或{@link #setTriangles(Drawable, Drawable, Drawable, Drawable)}后不再使用气泡
+     * @param color 气泡颜色
+     * @return this object
+     */
+    public TipManager setBubbleColor(int color) {
+        if (bubble == null || bubble.getColor() != color) {
+            //不修改已有的ConstantState，避免改变已显示的tip
+            bubble = new BubbleDrawable().setColor(color).setRadius(backgroundRadiu);
+        }
+        useBubble = true;
         return this;
     }
 
@@ -421,6 +915,7 @@ public class TipManager {
         triangles[1] = top;
         triangles[2] = right;
         triangles[3] = bottom;
+        useBubble = false;
         return this;
     }
 
@@ -471,6 +966,18 @@ public class TipManager {
         return this;
     }
 
+    /**
+     * 设置tip默认的手势隐藏策略，tip通过{@link ITip#setDismissPolicy(int)}设置的优先
+     * @param policy see {@link ITip.Dismiss}
+     * @return this object
+     */
+    public TipManager setDismissPolicy(@ITip.DismissPolicy int policy) {
+        if (tipViewLayout != null) {
+            tipViewLayout.setDefaultDismissPolicy(policy);
+        }
+        return this;
+    }
+
     /**
      * 设置点击隐藏是否产生回调
      * @param need true: 回调
@@ -502,6 +1009,10 @@ public class TipManager {
      * @return this object
      */
     public TipManager setTipBackgroundRadiu(int radiu) {
+        backgroundRadiu = radiu;
+        if (bubble != null && bubble.getRadius() != radiu) {
+            bubble = new BubbleDrawable().setColor(bubble.getColor()).setRadius(radiu);
+        }
         if (tipViewLayout != null) {
             tipViewLayout.setTipBackgroundRadiu(radiu);
         }
@@ -515,9 +1026,21 @@ public class TipManager {
      *                      目前{@link com.xfy.tipviewmanager.tip.IAdvancedTip}的实现为{@link AdvancedTip}，
      *                      是{@link NormalTip}的子类
      * @param text          tip需要显示的文案
+     * @param preTx         布局此tip时x移动距离，自动选择方向时一并考虑
+     * @param preTy         布局此tip时y移动距离，自动选择方向时一并考虑
      * @param direction     三角形指向 see {@link ITip.Triangle}
      */
-    private Rect initTip(View targetView, ITip tip, CharSequence text, @ITip.TriangleDirection int direction) {
+    private Rect initTip(View targetView, ITip tip, CharSequence text, int preTx, int preTy, @ITip.TriangleDirection int direction) {
+        final Rect rect = tempViewRect;
+        getViewRect(targetView, rect);
+        initTipStyle(tip, text, preTx, preTy, direction, rect);
+        return rect;
+    }
+
+    /**
+     * 获取view在tip坐标中的位置
+     */
+    private void getViewRect(View targetView, Rect rect) {
         if (DEBUG) {
             if (targetView.getWidth() == 0 || targetView.getHeight() == 0) {
                 throw new IllegalStateException("此异常只会在debug中或在白名单列表中出现\n" +
@@ -525,27 +1048,77 @@ public class TipManager {
                         "可调用tipmanager.checkViewCanShowTip(targetView, l)并在回调中调用showTipView方法。");
             }
         }
-        Rect rect = new Rect(0, 0, targetView.getWidth(), targetView.getHeight());
-        int[] loc = new int[2];
+        final int[] loc = tempLocation;
         targetView.getLocationInWindow(loc);
+        rect.set(0, 0, targetView.getWidth(), targetView.getHeight());
         rect.offset(loc[0], loc[1] - statusHeight);
+    }
 
+    /**
+     * 设置tip文字信息，背景信息，位置信息等
+     * @param anchor        根据anchor当前区域显示tip
+     * @param tip           see {@link #initTip(View, ITip, CharSequence, int, int, int)}
+     * @param text          tip需要显示的文案
+     * @param direction     三角形指向 see {@link ITip.Triangle}
+     */
+    private Rect initTip(TipAnchor anchor, ITip tip, CharSequence text, @ITip.TriangleDirection int direction) {
+        final Rect rect = tempViewRect;
+        anchor.getAnchorRect(rect);
+        rect.offset(0, -statusHeight);
+        initTipStyle(tip, text, 0, 0, direction, rect);
+        return rect;
+    }
+
+    private void initTipStyle(ITip tip, CharSequence text, int preTx, int preTy, @ITip.TriangleDirection int direction, Rect rect) {
         tip.setTipText(text);
         tip.setTipTextColor(textColor);
         tip.setTipTextSize(textSize);
         tip.setTipTextPadding(textPadding.left, textPadding.top, textPadding.right, textPadding.bottom);
-        tip.setTipBackgroundDrawable(background.getConstantState().newDrawable());
+        final NormalTip nt = tip instanceof NormalTip ? (NormalTip) tip : null;
+        if (nt != null)
+            nt.setAnimationSnapshot(animationSnapshot);
+        //自定义三角形和方向对应，显示时确定方向；气泡可在每次布局时重新选择方向
+        if (direction == ITip.Triangle.AUTO && !useBubble)
+            direction = tipViewLayout.pickDirection(tip, rect, preTx, preTy);
         tip.setTriangleDirection(direction);
-        if (direction != ITip.Triangle.NONE)
-            tip.setTriangleDrawable(triangles[direction - 1].getConstantState().newDrawable());
-        return rect;
+        if (useBubble) {
+            if (nt == null || !isFromSameState(nt.getBubbleDrawable(), bubble))
+                tip.setBubbleDrawable((BubbleDrawable) bubble.getConstantState().newDrawable());
+            tip.setTipBackgroundDrawable(null);
+            tip.setTriangleDrawable(null);
+            return;
+        }
+        tip.setBubbleDrawable(null);
+        if (nt == null || !isFromSameState(nt.getTipBackgroundDrawable(), background))
+            tip.setTipBackgroundDrawable(background.getConstantState().newDrawable());
+        if (direction != ITip.Triangle.NONE) {
+            final Drawable triangle = triangles[direction - 1];
+            if (nt == null || !isFromSameState(nt.getTriangleDrawable(), triangle))
+                tip.setTriangleDrawable(triangle.getConstantState().newDrawable());
+        }
     }
 
-    private void saveTip(View view, ITip tip) {
+    /**
+     * 使用自定义三角形时，{@link ITip.Triangle#AUTO}已在{@link #initTipStyle}中确定，布局时不再改变
+     */
+    private int getLayoutDirection(ITip tip, @ITip.TriangleDirection int direction) {
+        if (direction == ITip.Triangle.AUTO && !useBubble && tip instanceof NormalTip)
+            return ((NormalTip) tip).getTriangleDirection();
+        return direction;
+    }
+
+    /**
+     * tip已有的drawable是否由source的ConstantState创建，是则可直接复用
+     */
+    private static boolean isFromSameState(Drawable exist, Drawable source) {
+        return exist != null && exist.getConstantState() == source.getConstantState();
+    }
+
+    private void saveTip(Object key, ITip tip) {
         if (tips == null) {
             tips = new HashMap<>();
         }
-        tips.put(view, tip);
+        tips.put(key, tip);
     }
 
     public ITip findTip(View targetView) {
@@ -555,17 +1128,38 @@ public class TipManager {
         return null;
     }
 
+    public ITip findTip(TipAnchor anchor) {
+        if (tips != null) {
+            return tips.get(anchor);
+        }
+        return null;
+    }
+
     /**
      * 释放资源，清除所有tip和view
-     * 仅供{@link #unbindActivity(Activity)}调用
+     * 仅供{@link #unbindActivity(Activity)}及{@link #unbindWindow(Window)}调用
      */
     private void release() {
-        tipViewLayout.removeAllTip();
-        ViewParent parent = tipViewLayout.getParent();
-        if (parent != null && parent instanceof ViewGroup) {
-            ((ViewGroup) parent).removeView(tipViewLayout);
+        if (autoUnbindView != null) {
+            autoUnbindView.removeOnAttachStateChangeListener(autoUnbindListener);
+            autoUnbindView = null;
+            autoUnbindListener = null;
         }
+        if (pendingQueue != null) {
+            pendingQueue.clear();
+            pendingQueue = null;
+        }
+        if (mutationQueue != null) {
+            mutationQueue.clear();
+            mutationQueue = null;
+        }
+        tipViewLayout.removeAllTip();
+        tipViewLayout.detachHost();
+        tipViewLayout.setHostContainer(null);
         if (tips != null) {
+            for (ITip tip : tips.values()) {
+                TipPool.recycle(tip);
+            }
             tips.clear();
         }
         tipViewLayout = null;
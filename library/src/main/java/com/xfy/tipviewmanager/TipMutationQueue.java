@@ -0,0 +1,129 @@
+package com.xfy.tipviewmanager;
+
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link TipManager}批量模式下的操作队列
+ * 同一个view的多次操作合并为一次(以最后一次为准)，每一帧由{@link Choreographer}回调时统一执行
+ * eg: 显示->隐藏->显示 合并为一次显示，文字以最后一次为准
+ */
+final class TipMutationQueue implements Choreographer.FrameCallback {
+    static final int NONE = 0;
+    static final int SHOW = 1;
+    static final int HIDE = 2;
+    static final int REMOVE = 3;
+
+    /**
+     * 一个view在这一帧中合并后的操作
+     */
+    static final class Mutation {
+        int op = NONE;
+        CharSequence text;
+        int preTx;
+        int preTy;
+        int direction;
+        long delay;
+        boolean hasTriangleMargin = false;
+        int triangleMargin;
+    }
+
+    private final TipManager manager;
+    private final LinkedHashMap<View, Mutation> pending = new LinkedHashMap<>();
+    private boolean posted = false;
+
+    TipMutationQueue(TipManager manager) {
+        this.manager = manager;
+    }
+
+    void show(View view, CharSequence text, int preTx, int preTy, int direction, long delay) {
+        final Mutation m = obtain(view);
+        m.op = SHOW;
+        m.text = text;
+        m.preTx = preTx;
+        m.preTy = preTy;
+        m.direction = direction;
+        m.delay = delay;
+    }
+
+    void hide(View view) {
+        final Mutation m = obtain(view);
+        m.op = HIDE;
+        m.text = null;
+    }
+
+    void remove(View view) {
+        final Mutation m = obtain(view);
+        m.op = REMOVE;
+        m.text = null;
+        m.hasTriangleMargin = false;
+    }
+
+    void setTriangleMargin(View view, int margin) {
+        final Mutation m = obtain(view);
+        m.hasTriangleMargin = true;
+        m.triangleMargin = margin;
+    }
+
+    /**
+     * 取消view对应的所有未执行操作
+     */
+    void cancel(View view) {
+        pending.remove(view);
+    }
+
+    /**
+     * 取消所有未执行操作
+     */
+    void clear() {
+        pending.clear();
+        if (posted) {
+            posted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    /**
+     * 立即执行所有未执行的操作
+     */
+    void flush() {
+        if (posted) {
+            posted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        if (pending.isEmpty())
+            return;
+        manager.beginInvalidateBatch();
+        //执行过程中(eg: 隐藏回调)可能加入新的操作，每次从头取出
+        while (!pending.isEmpty()) {
+            final Iterator<Map.Entry<View, Mutation>> it = pending.entrySet().iterator();
+            final Map.Entry<View, Mutation> e = it.next();
+            it.remove();
+            manager.applyMutation(e.getKey(), e.getValue());
+        }
+        manager.endInvalidateBatch();
+    }
+
+    private Mutation obtain(View view) {
+        Mutation m = pending.get(view);
+        if (m == null) {
+            m = new Mutation();
+            pending.put(view, m);
+        }
+        if (!posted) {
+            posted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        return m;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        flush();
+    }
+}
@@ -0,0 +1,165 @@
+package com.xfy.tipviewmanager;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+
+/**
+ * 等待view layout完成后再显示tip的队列
+ * 每个{@link TipManager}只有一个{@link ViewTreeObserver.OnPreDrawListener}，
+ * 注册在承载tip的容器及等待中的view所在窗口上(eg: Dialog中的view)，每个窗口只注册一次；
+ * 还未添加到窗口的view在添加后再注册
+ * 每次绘制前检查所有等待中的view，已有宽高的view在同一次刷新中统一回调，
+ * 没有宽高的view继续等待，直到被取消
+ */
+final class TipPendingQueue implements ViewTreeObserver.OnPreDrawListener, View.OnAttachStateChangeListener {
+
+    private static final class Pending {
+        final View view;
+        final ViewAvalableListener listener;
+        boolean cancelled = false;
+
+        Pending(View view, ViewAvalableListener listener) {
+            this.view = view;
+            this.listener = listener;
+        }
+    }
+
+    private final TipManager manager;
+    private final ArrayList<Pending> pendings = new ArrayList<>();
+    private final ArrayList<ViewTreeObserver> observers = new ArrayList<>();
+    /**
+     * 回调过程中取消的等待只做标记，回调结束后统一移除
+     */
+    private boolean dispatching = false;
+
+    TipPendingQueue(TipManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * 加入等待队列
+     * @param view      等待layout的view
+     * @param listener  view有宽高后的回调
+     * @param owner     注册监听的view，一般为承载tip的容器
+     */
+    void add(View view, ViewAvalableListener listener, View owner) {
+        pendings.add(new Pending(view, listener));
+        observe(owner);
+        if (view == owner)
+            return;
+        //view可能在其他窗口中，不在同一窗口时容器绘制不会触发
+        if (view.getWindowToken() != null) {
+            observe(view);
+        } else {
+            view.removeOnAttachStateChangeListener(this);
+            view.addOnAttachStateChangeListener(this);
+        }
+    }
+
+    /**
+     * 在view当前所在窗口上注册，已注册过的窗口不重复注册
+     */
+    private void observe(View view) {
+        final ViewTreeObserver o = view.getViewTreeObserver();
+        if (!o.isAlive() || observers.contains(o))
+            return;
+        o.addOnPreDrawListener(this);
+        observers.add(o);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        v.removeOnAttachStateChangeListener(this);
+        if (!pendings.isEmpty())
+            observe(v);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+    }
+
+    /**
+     * 取消view对应的所有等待
+     */
+    void cancel(View view) {
+        for (int i = pendings.size() - 1; i >= 0; i--) {
+            final Pending p = pendings.get(i);
+            if (p.view == view) {
+                p.cancelled = true;
+                view.removeOnAttachStateChangeListener(this);
+                if (!dispatching)
+                    pendings.remove(i);
+            }
+        }
+        if (!dispatching && pendings.isEmpty()) {
+            removeListener();
+            manager.onPendingQueueEmpty();
+        }
+    }
+
+    void clear() {
+        for (int i = 0, l = pendings.size(); i < l; i++) {
+            final Pending p = pendings.get(i);
+            p.cancelled = true;
+            p.view.removeOnAttachStateChangeListener(this);
+        }
+        if (dispatching)
+            return;
+        pendings.clear();
+        removeListener();
+    }
+
+    private void removeListener() {
+        for (int i = 0, l = observers.size(); i < l; i++) {
+            final ViewTreeObserver o = observers.get(i);
+            if (o.isAlive()) {
+                o.removeOnPreDrawListener(this);
+            }
+        }
+        observers.clear();
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        final ArrayList<Pending> list = pendings;
+        final int size = list.size();
+        int keep = 0;
+        dispatching = true;
+        manager.beginInvalidateBatch();
+        for (int i = 0; i < size; i++) {
+            final Pending p = list.get(i);
+            if (p.cancelled)
+                continue;
+            final View v = p.view;
+            if (v.getWidth() == 0 || v.getHeight() == 0) {
+                list.set(keep++, p);
+            } else if (p.listener != null) {
+                //回调中可能加入或取消等待，加入的在列表末尾
+                p.listener.onViewAvalable(v);
+            }
+        }
+        manager.endInvalidateBatch();
+        dispatching = false;
+        //移除取消的等待，保留未layout的和回调中新加入的
+        int n = 0;
+        for (int i = 0, l = list.size(); i < l; i++) {
+            if (i == keep)
+                i = size;
+            if (i >= l)
+                break;
+            final Pending p = list.get(i);
+            if (!p.cancelled)
+                list.set(n++, p);
+        }
+        for (int i = list.size() - 1; i >= n; i--) {
+            list.remove(i);
+        }
+        if (list.isEmpty()) {
+            removeListener();
+            manager.onPendingQueueEmpty();
+        }
+        return true;
+    }
+}
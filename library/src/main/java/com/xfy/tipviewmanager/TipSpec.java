@@ -0,0 +1,55 @@
+package com.xfy.tipviewmanager;
+
+import android.view.View;
+
+import com.xfy.tipviewmanager.tip.ITip;
+
+/**
+ * 批量显示tip时，单个tip的描述
+ * see {@link TipManager#showTipViews(java.util.List)}
+ */
+public class TipSpec {
+    View targetView;
+    CharSequence text;
+    int preTx;
+    int preTy;
+    @ITip.TriangleDirection
+    int direction;
+
+    /**
+     * @param targetView    需要显示tip指向的view
+     * @param text          tip中的文字
+     * @param direction     三角形指向方向 see {@link ITip.Triangle}
+     */
+    public TipSpec(View targetView, CharSequence text, @ITip.TriangleDirection int direction) {
+        this.targetView = targetView;
+        this.text = text;
+        this.direction = direction;
+    }
+
+    /**
+     * 设置布局此tip时移动距离
+     * @param preTx x移动距离
+     * @param preTy y移动距离
+     * @return this object
+     */
+    public TipSpec setPreTranslate(int preTx, int preTy) {
+        this.preTx = preTx;
+        this.preTy = preTy;
+        return this;
+    }
+
+    public TipSpec setText(CharSequence text) {
+        this.text = text;
+        return this;
+    }
+
+    public TipSpec setDirection(@ITip.TriangleDirection int direction) {
+        this.direction = direction;
+        return this;
+    }
+
+    public View getTargetView() {
+        return targetView;
+    }
+}
@@ -26,6 +26,7 @@ public class AdvancedTextDrawable extends TextDrawable {
     public void setText(CharSequence text) {
         if (isTextSame(this.text, text))
             return;
+        invalidateMeasure();
         if (text == null) {
             this.text = null;
             layout = null;
@@ -53,6 +54,14 @@ public class AdvancedTextDrawable extends TextDrawable {
         canvas.restore();
     }
 
+    /**
+     * StaticLayout在第一次绘制时创建，创建前的绘制没有内容
+     */
+    @Override
+    public boolean isLayoutReady() {
+        return layout != null || TextUtils.isEmpty(text);
+    }
+
     @Override
     public int getIntrinsicHeight() {
         if (layout == null)
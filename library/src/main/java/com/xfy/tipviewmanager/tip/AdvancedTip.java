@@ -10,6 +10,11 @@ package com.xfy.tipviewmanager.tip;
 public class AdvancedTip extends NormalTip implements IAdvancedTip {
 
     private ITextDelegate textDelegate;
+    /**
+     * 转换前的文案，文案和转换器都没变时不再重新转换
+     */
+    private CharSequence sourceText;
+    private ITextDelegate parsedDelegate;
 
     public AdvancedTip() {
         super();
@@ -21,6 +26,14 @@ public class AdvancedTip extends NormalTip implements IAdvancedTip {
         return this;
     }
 
+    @Override
+    protected void reset() {
+        super.reset();
+        textDelegate = null;
+        sourceText = null;
+        parsedDelegate = null;
+    }
+
     @Override
     protected TextDrawable newTextDrawable() {
         return new AdvancedTextDrawable();
@@ -28,6 +41,11 @@ public class AdvancedTip extends NormalTip implements IAdvancedTip {
 
     @Override
     public IAdvancedTip setTipText(CharSequence text) {
+        if (textDelegate != null && textDelegate == parsedDelegate && isTextSame(sourceText, text)) {
+            return this;
+        }
+        sourceText = text;
+        parsedDelegate = textDelegate;
         if (textDelegate != null && text != null) {
             super.setTipText(textDelegate.parseText(text));
         } else {
@@ -35,4 +53,10 @@ public class AdvancedTip extends NormalTip implements IAdvancedTip {
         }
         return this;
     }
+
+    private static boolean isTextSame(CharSequence t1, CharSequence t2) {
+        if (t1 == null)
+            return t2 == null;
+        return t1.equals(t2);
+    }
 }
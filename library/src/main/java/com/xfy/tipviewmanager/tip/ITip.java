@@ -6,6 +6,7 @@ import android.support.annotation.IntDef;
 import android.view.View;
 
 import com.xfy.tipviewmanager.anim.ITipAnimation;
+import com.xfy.tipviewmanager.triangle.BubbleDrawable;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -31,13 +32,29 @@ public interface ITip {
         int TOP = 2;    //三角形指向上方
         int RIGHT = 3;  //三角形指向右侧
         int BOTTOM = 4; //三角形指向下方
+        int AUTO = 5;   //根据可用空间自动选择方向，布局时由TipViewLayout确定实际方向
     }
 
-    @IntDef({Triangle.NONE, Triangle.LEFT, Triangle.TOP, Triangle.RIGHT, Triangle.BOTTOM})
+    @IntDef({Triangle.NONE, Triangle.LEFT, Triangle.TOP, Triangle.RIGHT, Triangle.BOTTOM, Triangle.AUTO})
     @Retention(RetentionPolicy.SOURCE)
     @interface TriangleDirection {
     }
 
+    /**
+     * 手势隐藏策略，可组合
+     */
+    interface Dismiss {
+        int DEFAULT = -1;       //使用TipViewLayout的默认策略
+        int KEEP = 0;           //不随手势隐藏
+        int OUTSIDE_TAP = 1;    //点击tip以外的区域时隐藏
+        int SCROLL = 2;         //滑动或快速滑动时隐藏
+    }
+
+    @IntDef(flag = true, value = {Dismiss.DEFAULT, Dismiss.KEEP, Dismiss.OUTSIDE_TAP, Dismiss.SCROLL})
+    @Retention(RetentionPolicy.SOURCE)
+    @interface DismissPolicy {
+    }
+
     /**
      * 设置{@link #show()}或{@link #hide()}时是否使用动画
      * 默认使用
@@ -63,6 +80,13 @@ public interface ITip {
 
     ITip show();
 
+    /**
+     * 延时显示，在显示前调用{@link #show()}或{@link #hide()}会取消延时显示
+     * @param delay 延时，单位ms
+     * @return this object
+     */
+    ITip showDelay(long delay);
+
     /**
      * 隐藏 默认通知监听
      * @return this object
@@ -141,6 +165,14 @@ public interface ITip {
      */
     ITip setTriangleDrawable(Drawable drawable);
 
+    /**
+     * 设置背景及三角形合一的气泡，设置后{@link #setTipBackgroundDrawable(Drawable)}和
+     * {@link #setTriangleDrawable(Drawable)}设置的drawable不再绘制
+     * @param bubble 为null时恢复使用背景及三角形
+     * @return this object
+     */
+    ITip setBubbleDrawable(BubbleDrawable bubble);
+
     /**
      * 设置三角形方向
      * @param direction 可选值：
@@ -160,6 +192,20 @@ public interface ITip {
      */
     ITip setOnTipHideListener(OnTipHideListener onTipHideListener);
 
+    /**
+     * 设置点击监听，设置后点击tip不再自动隐藏
+     * @param onTipClickListener
+     * @return this object
+     */
+    ITip setOnTipClickListener(OnTipClickListener onTipClickListener);
+
+    /**
+     * 设置手势隐藏策略，每个手势只判断一次
+     * @param policy see {@link Dismiss}
+     * @return this object
+     */
+    ITip setDismissPolicy(@DismissPolicy int policy);
+
     /**
      * 设置translate
      * @param x
@@ -1,13 +1,16 @@
 package com.xfy.tipviewmanager.tip;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
+import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.ShapeDrawable;
 import android.os.SystemClock;
 import android.support.annotation.ColorInt;
 import android.support.annotation.IntRange;
@@ -16,17 +19,23 @@ import android.support.annotation.Nullable;
 import android.view.animation.Transformation;
 
 import com.xfy.tipviewmanager.anim.ITipAnimation;
+import com.xfy.tipviewmanager.triangle.BubbleDrawable;
+import com.xfy.tipviewmanager.triangle.TriangleDrawable;
 
 /**
  * Created by XiongFangyu on 2017/6/20.
  *
  * tip普通实现
  */
-public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimator.AnimatorUpdateListener, LayoutListener<TextDrawable> {
+public class NormalTip extends Drawable implements ITip, Touchable, LayoutListener<TextDrawable> {
 
     private Drawable background;
     private TextDrawable textDrawable;
     private Drawable triangle;
+    /**
+     * 不为空时代替background和triangle
+     */
+    private BubbleDrawable bubble;
     private Rect paddingRect;
     private int triangleMargin;
 
@@ -34,21 +43,95 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
     private
     @TriangleDirection
     int direction;
-    private ValueAnimator animator;
+    private static final int ANIM_NONE = 0;
+    private static final int ANIM_SHOWING = 1;
+    private static final int ANIM_HIDING = 2;
+
+    /**
+     * 当前动画状态，显示或隐藏动画由此区分
+     */
+    private int animState = ANIM_NONE;
+    /**
+     * 动画开始时间，-1表示在下一帧开始
+     */
+    private long animStartTime = -1;
+    private TipAnimationDriver animationDriver;
+    private TipTimerWheel timerWheel;
+    /**
+     * 由{@link TipAnimationDriver}维护
+     */
+    boolean inAnimationDriver = false;
     private long showAnimTime = SHOW_ANIMATION_DURATION;
     private long hideAnimTime = HIDE_ANIMATION_DURATION;
 
     private OnTipHideListener onTipHideListener;
+    private OnTipClickListener onTipClickListener;
+    private int dismissPolicy = Dismiss.DEFAULT;
 
     private Transformation mTransformation;
     private ITipAnimation tipAnimation;
     private LayoutListener layoutListener;
 
-    private boolean inHidingAnim = false;
     private boolean needNotifyListener = true;
+    /**
+     * 文字、方向、边距或背景等影响大小的属性是否在上次布局后改变过
+     */
+    private boolean layoutDirty = true;
+    /**
+     * 下一次{@link #onBoundsChange(Rect)}只是平移，直接平移子drawable
+     */
+    private boolean offsetOnly = false;
+    /**
+     * 指向的view不可见时挂起，不绘制，动画及自动隐藏暂停
+     * see {@link #setSuspended(boolean)}
+     */
+    private boolean suspended = false;
+    private long suspendTime;
+    private long hideRemaining = -1;
+    private int offsetDx, offsetDy;
 
     private float translateX, translateY;
 
+    /**
+     * 上一次刷新时tip在画布上占据的区域，用于计算局部刷新区域
+     */
+    private final Rect drawnRect = new Rect();
+    private final RectF tempRectF = new RectF();
+    private final Rect layoutRect = new Rect();
+    /**
+     * 动画矩阵是否为单位矩阵以外的变换
+     */
+    private boolean hasMatrix = false;
+    /**
+     * 动画时将tip绘制到bitmap，每帧只绘制bitmap
+     * see {@link #setAnimationSnapshot(boolean)}
+     */
+    private boolean useSnapshot = false;
+    private Bitmap snapshot;
+    private Paint snapshotPaint;
+    private final Rect snapshotSrc = new Rect();
+    /**
+     * 动画当前透明度，快照释放后恢复到子drawable
+     */
+    private int animAlpha = 255;
+    /**
+     * 不为空时由此view绘制，动画时使用硬件层
+     * see {@link TipViewLayout#setLayerAnimation(boolean)}
+     */
+    TipRenderView renderView;
+    /**
+     * 批量模式下显示还在队列中时，记录对tip的显示、隐藏及自动隐藏调用，队列执行时再应用
+     * see {@link #setDeferred(boolean)}
+     */
+    private boolean deferred = false;
+    /**
+     * 是否已调用过{@link #show()}且还未隐藏，为true时再次显示不重新开始动画
+     */
+    private boolean shown = false;
+    private boolean deferredHide = false;
+    private long deferredShowDelay = -1;
+    private long deferredAutoHide = -1;
+
     public NormalTip() {
         textDrawable = newTextDrawable();
         paddingRect = new Rect();
@@ -62,19 +145,29 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
 
     @Override
     protected void onBoundsChange(Rect bounds) {
+        if (offsetOnly) {
+            offsetOnly = false;
+            offsetChildren(offsetDx, offsetDy);
+            invalidateSelf();
+            return;
+        }
+        releaseSnapshot();
         final int measureWidth = bounds.width();
         final int measureHeight = bounds.height();
 
         final int needWidth = textDrawable.getIntrinsicWidth();
         final int needHeight = textDrawable.getIntrinsicHeight();
 
-        final int triangleWidth = triangle != null ? triangle.getIntrinsicWidth() : 0;
-        final int triangleHeight = triangle != null ? triangle.getIntrinsicHeight() : 0;
+        final int triangleWidth = getTriangleWidth();
+        final int triangleHeight = getTriangleHeight();
+        //使用气泡时，三角形只占位置，由气泡绘制
+        final Drawable triangle = bubble == null ? this.triangle : null;
 
         int maxTextWidth = measureWidth - paddingRect.left - paddingRect.right;
         int maxTextHeight = measureHeight - paddingRect.top - paddingRect.bottom;
 
-        final Rect baseRect = new Rect(bounds);
+        final Rect baseRect = layoutRect;
+        baseRect.set(bounds);
 
         switch (direction) {
             case Triangle.LEFT:
@@ -125,32 +218,205 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
         baseRect.top -= paddingRect.top;
         baseRect.right += paddingRect.right;
         baseRect.bottom += paddingRect.bottom;
-        if (background != null) {
+        if (bubble != null) {
+            switch (direction) {
+                case Triangle.LEFT:
+                    baseRect.left -= triangleWidth;
+                    break;
+                case Triangle.TOP:
+                    baseRect.top -= triangleHeight;
+                    break;
+                case Triangle.RIGHT:
+                    baseRect.right += triangleWidth;
+                    break;
+                case Triangle.BOTTOM:
+                    baseRect.bottom += triangleHeight;
+                    break;
+            }
+            bubble.setArrowOffset(triangleMargin);
+            bubble.setBounds(baseRect);
+        } else if (background != null) {
             background.setBounds(baseRect);
         }
+        layoutDirty = false;
+        invalidateSelf();
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        final boolean changed = super.setVisible(visible, restart);
+        if (changed && renderView != null)
+            renderView.invalidate();
+        final Callback callback = getCallback();
+        if (changed && callback instanceof TipViewLayout) {
+            ((TipViewLayout) callback).onTipVisibilityChanged(this, visible);
+        }
+        return changed;
+    }
+
+    /**
+     * 设置tip位置及箭头边距，由{@link TipViewLayout}调用
+     * 位置未改变时，只有箭头边距或其他布局属性改变了才重新布局
+     */
+    void applyLayout(int left, int top, int right, int bottom, int margin) {
+        final boolean marginChanged = triangleMargin != margin;
+        triangleMargin = margin;
+        final Rect bounds = getBounds();
+        if (bounds.left != left || bounds.top != top || bounds.right != right || bounds.bottom != bottom) {
+            //大小及其他布局属性都没变时，只平移
+            offsetOnly = !marginChanged && !layoutDirty && !bounds.isEmpty()
+                    && bounds.width() == right - left && bounds.height() == bottom - top;
+            offsetDx = left - bounds.left;
+            offsetDy = top - bounds.top;
+            setBounds(left, top, right, bottom);
+        } else if (marginChanged || layoutDirty) {
+            onBoundsChange(bounds);
+        }
+    }
+
+    private void offsetChildren(int dx, int dy) {
+        offsetBounds(textDrawable, dx, dy);
+        offsetBounds(bubble, dx, dy);
+        offsetBounds(background, dx, dy);
+        offsetBounds(triangle, dx, dy);
+    }
+
+    private static void offsetBounds(Drawable d, int dx, int dy) {
+        if (d == null)
+            return;
+        final Rect b = d.getBounds();
+        d.setBounds(b.left + dx, b.top + dy, b.right + dx, b.bottom + dy);
+    }
+
+    boolean isLayoutDirty() {
+        return layoutDirty;
     }
 
     @Override
     public void draw(@NonNull Canvas canvas) {
-        if (isVisible()) {
-            canvas.save();
-            canvas.concat(mTransformation.getMatrix());
+        if (!isVisible() || suspended)
+            return;
+        //没有变换时不需要保存画布状态
+        final boolean transformed = hasMatrix || translateX != 0 || translateY != 0;
+        int save = 0;
+        if (transformed) {
+            save = canvas.save();
+            if (hasMatrix)
+                canvas.concat(mTransformation.getMatrix());
             canvas.translate(translateX, translateY);
-            if (background != null) {
-                background.draw(canvas);
-            }
-            if (textDrawable != null) {
-                textDrawable.draw(canvas);
-            }
-            if (triangle != null) {
-                triangle.draw(canvas);
-            }
-            canvas.restore();
+        }
+        if (snapshot != null) {
+            canvas.drawBitmap(snapshot, snapshotSrc, getBounds(), snapshotPaint);
+        } else if (bubble != null) {
+            bubble.draw(canvas);
+        } else if (background != null) {
+            background.draw(canvas);
+        }
+        if (snapshot == null && textDrawable != null) {
+            textDrawable.draw(canvas);
+        }
+        if (snapshot == null && bubble == null && triangle != null) {
+            triangle.draw(canvas);
+        }
+        if (transformed) {
+            canvas.restoreToCount(save);
         }
     }
 
+    /**
+     * 将背景、文字及三角形以不透明绘制到bitmap中
+     * 在动画开始及每帧推进时调用，不在{@link #draw(Canvas)}中创建
+     */
+    private void createSnapshot() {
+        if (!useSnapshot || snapshot != null || renderView != null || animState == ANIM_NONE || layoutDirty)
+            return;
+        //文字还未布局时(eg: AdvancedTextDrawable第一次绘制)直接绘制，布局后的帧再创建
+        if (textDrawable != null && !textDrawable.isLayoutReady())
+            return;
+        final Rect bounds = getBounds();
+        if (bounds.isEmpty())
+            return;
+        //bounds可能在子drawable绘制时改变，使用创建时的大小
+        final int left = bounds.left;
+        final int top = bounds.top;
+        final int width = bounds.width();
+        final int height = bounds.height();
+        final Callback callback = getCallback();
+        if (callback instanceof TipViewLayout)
+            TipSnapshotPool.register(((TipViewLayout) callback).getContext());
+        final Bitmap bitmap = TipSnapshotPool.acquire(width, height);
+        if (bitmap == null)
+            return;
+        //只影响快照内容，画面由之后的帧刷新
+        setChildAlpha(255);
+        final Canvas c = TipSnapshotPool.getCanvas(bitmap);
+        c.translate(-left, -top);
+        if (bubble != null) {
+            bubble.draw(c);
+        } else if (background != null) {
+            background.draw(c);
+        }
+        if (textDrawable != null) {
+            textDrawable.draw(c);
+        }
+        if (bubble == null && triangle != null) {
+            triangle.draw(c);
+        }
+        c.translate(left, top);
+        c.setBitmap(null);
+        if (layoutDirty || bounds.left != left || bounds.top != top
+                || bounds.width() != width || bounds.height() != height) {
+            //绘制中重新布局了，快照已过期
+            TipSnapshotPool.release(bitmap);
+            setChildAlpha(animAlpha);
+            return;
+        }
+        if (snapshotPaint == null)
+            snapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        snapshotPaint.setAlpha(animAlpha);
+        snapshotSrc.set(0, 0, width, height);
+        snapshot = bitmap;
+    }
+
+    /**
+     * 释放快照，子drawable恢复为当前透明度
+     */
+    private void releaseSnapshot() {
+        if (snapshot == null)
+            return;
+        TipSnapshotPool.release(snapshot);
+        snapshot = null;
+        //快照与子drawable在当前透明度下绘制结果相同，不需要刷新
+        setChildAlpha(animAlpha);
+    }
+
+    /**
+     * 设置动画时是否使用bitmap快照，开启后动画开始时将tip绘制到池中的bitmap，
+     * 每帧只以一个画笔绘制bitmap，动画结束后释放
+     * 适合低端机上的渐变动画，会额外占用tip大小的bitmap内存
+     * @param use true: 使用快照
+     * @return this object
+     */
+    public ITip setAnimationSnapshot(boolean use) {
+        useSnapshot = use;
+        if (!use)
+            releaseSnapshot();
+        return this;
+    }
+
     @Override
     public void setAlpha(@IntRange(from = 0, to = 255) int alpha) {
+        setChildAlpha(alpha);
+        invalidateSelf();
+    }
+
+    /**
+     * 设置子drawable的透明度，不刷新
+     */
+    private void setChildAlpha(int alpha) {
+        if (bubble != null) {
+            bubble.setAlpha(alpha);
+        }
         if (background != null) {
             background.setAlpha(alpha);
         }
@@ -160,11 +426,14 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
         if (triangle != null) {
             triangle.setAlpha(alpha);
         }
-        invalidateSelf();
     }
 
     @Override
     public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        releaseSnapshot();
+        if (bubble != null) {
+            bubble.setColorFilter(colorFilter);
+        }
         if (background != null) {
             background.setColorFilter(colorFilter);
         }
@@ -195,9 +464,6 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
 
     @Override
     public ITip setAnimationTime(long showTime, long hideTime) {
-        //用于动画结束后判断是隐藏动画还是显示动画，目前暂无别的好方法
-        if (showTime == hideTime)
-            hideTime++;
         showAnimTime = showTime;
         hideAnimTime = hideTime;
         return this;
@@ -205,43 +471,232 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
 
     @Override
     public ITip show() {
+        if (deferred) {
+            deferredHide = false;
+            deferredShowDelay = 0;
+            return this;
+        }
+        if (timerWheel != null)
+            timerWheel.cancel(showTimer);
+        if (shown && isVisible() && animState != ANIM_HIDING)
+            return this;
+        shown = true;
         setVisible(true, false);
-        inHidingAnim = false;
-        if (needAnim) {
-            initAnim(true);
-            mTransformation.clear();
-            animator.start();
+        mTransformation.clear();
+        hasMatrix = false;
+        if (needAnim && renderView != null) {
+            animState = ANIM_SHOWING;
+            setAlpha(255);
+            renderView.animateTip(true, showAnimTime, tipAnimation);
+        } else if (needAnim && animationDriver != null) {
+            startAnimation(ANIM_SHOWING);
+            //立即应用第一帧，避免动画开始前以上次的透明度绘制
+            applyAnimation(0);
+        } else {
+            //drawable会被复用，需清除上次隐藏动画留下的状态
+            animState = ANIM_NONE;
+            animAlpha = 255;
+            releaseSnapshot();
+            setAlpha(255);
+            if (renderView != null)
+                renderView.cancelAnimation();
         }
         return this;
     }
 
+    /**
+     * 挂起或恢复tip，由{@link TipViewLayout}在tip指向的view不可见或重新可见时调用
+     * 挂起时不绘制，动画暂停，自动隐藏的剩余时间保留到恢复时
+     * @param suspend true: 挂起
+     */
+    void setSuspended(boolean suspend) {
+        if (suspended == suspend)
+            return;
+        final long now = SystemClock.uptimeMillis();
+        if (suspend) {
+            suspended = true;
+            suspendTime = now;
+            //挂起后绘制区域为空，刷新区域为上次绘制的区域，同时从点击检测网格中移除
+            invalidateSelf();
+            if (timerWheel != null && hideTimer.isScheduled()) {
+                hideRemaining = hideTimer.getRemaining(now);
+                timerWheel.cancel(hideTimer);
+            }
+        } else {
+            suspended = false;
+            if (hideRemaining >= 0 && timerWheel != null) {
+                timerWheel.schedule(hideTimer, Math.max(hideRemaining, 1));
+            }
+            hideRemaining = -1;
+            if (animState != ANIM_NONE && animationDriver != null) {
+                if (animStartTime >= 0)
+                    animStartTime += now - suspendTime;
+                animationDriver.start(this);
+            }
+            invalidateSelf();
+        }
+        final Callback callback = getCallback();
+        if (callback instanceof TipViewLayout) {
+            ((TipViewLayout) callback).requestWindowUpdate();
+        }
+    }
+
+    boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * 是否在显示或隐藏动画中
+     */
+    boolean isAnimating() {
+        return animState != ANIM_NONE;
+    }
+
+    /**
+     * 恢复到新建时的状态，由{@link TipPool}回收时调用
+     * 释放快照bitmap；保留不持有bitmap的背景、三角形及气泡，下次使用时相同样式的drawable可直接复用
+     */
+    protected void reset() {
+        release();
+        setDeferred(false);
+        shown = false;
+        setVisible(false, false);
+        textDrawable.setText(null);
+        textDrawable.setLayoutListener(this);
+        needAnim = true;
+        tipAnimation = null;
+        showAnimTime = SHOW_ANIMATION_DURATION;
+        hideAnimTime = HIDE_ANIMATION_DURATION;
+        needNotifyListener = true;
+        dismissPolicy = Dismiss.DEFAULT;
+        useSnapshot = false;
+        animAlpha = 255;
+        setAlpha(255);
+        mTransformation.clear();
+        hasMatrix = false;
+        translateX = translateY = 0;
+        triangleMargin = 0;
+        //AUTO从当前方向开始选择，复用的tip不能沿用上次的方向
+        direction = Triangle.NONE;
+        if (bubble != null)
+            bubble.setDirection(Triangle.NONE);
+        offsetOnly = false;
+        drawnRect.setEmpty();
+        layoutDirty = true;
+        renderView = null;
+        //回收池中的tip不持有bitmap，复用时由TipManager通过ConstantState重新创建
+        if (!isBitmapFree(background))
+            background = null;
+        if (!isBitmapFree(triangle))
+            triangle = null;
+    }
+
+    /**
+     * 是否确定不持有bitmap，.9图、矢量图及组合drawable等都可能持有
+     */
+    private static boolean isBitmapFree(Drawable drawable) {
+        return drawable == null
+                || drawable instanceof ColorDrawable
+                || drawable instanceof GradientDrawable
+                || drawable instanceof ShapeDrawable
+                || drawable instanceof TriangleDrawable;
+    }
+
     void release() {
-        unscheduleSelf(hideTask);
+        suspended = false;
+        hideRemaining = -1;
+        if (timerWheel != null) {
+            timerWheel.cancel(hideTimer);
+            timerWheel.cancel(showTimer);
+            timerWheel = null;
+        }
+        animState = ANIM_NONE;
+        releaseSnapshot();
+        animationDriver = null;
         layoutListener = null;
         onTipHideListener = null;
+        onTipClickListener = null;
         if (textDrawable != null)
             textDrawable.setLayoutListener(null);
     }
 
-    private void initAnim(boolean show) {
-        if (animator == null) {
-            animator = new ValueAnimator();
-            animator.setInterpolator(null);
-            animator.addUpdateListener(this);
-            animator.addListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    if (animation.getDuration() == hideAnimTime) {
-                        setVisible(false, false);
-                        notifyHideListener();
-                    }
-                }
-            });
+    void setAnimationDriver(TipAnimationDriver driver) {
+        animationDriver = driver;
+    }
+
+    void setTimerWheel(TipTimerWheel wheel) {
+        timerWheel = wheel;
+    }
+
+    private void startAnimation(int state) {
+        animState = state;
+        animStartTime = -1;
+        createSnapshot();
+        animationDriver.start(this);
+    }
+
+    /**
+     * 由{@link TipAnimationDriver}每帧调用
+     * @param now 当前帧时间，单位ms
+     * @return true: 动画还未结束
+     */
+    boolean stepAnimation(long now) {
+        if (animState == ANIM_NONE || suspended)
+            return false;
+        if (animStartTime < 0)
+            animStartTime = now;
+        //开始时还未布局或布局后快照被释放时，在帧回调中重新创建
+        createSnapshot();
+        final long duration = animState == ANIM_SHOWING ? showAnimTime : hideAnimTime;
+        float fraction = duration > 0 ? (now - animStartTime) / (float) duration : 1;
+        if (fraction > 1)
+            fraction = 1;
+        applyAnimation(animState == ANIM_SHOWING ? fraction : 1 - fraction);
+        return fraction < 1;
+    }
+
+    /**
+     * 动画结束或被取消后由{@link TipAnimationDriver}调用
+     */
+    void onAnimationFinished() {
+        //挂起时动画暂停，恢复时继续
+        if (suspended)
+            return;
+        final boolean hiding = animState == ANIM_HIDING;
+        animState = ANIM_NONE;
+        releaseSnapshot();
+        if (hiding) {
+            shown = false;
+            setVisible(false, false);
+            notifyHideListener();
         }
-        if (show) {
-            animator.setDuration(showAnimTime).setFloatValues(0, 1);
-        } else {
-            animator.setDuration(hideAnimTime).setFloatValues(1, 0);
+    }
+
+    /**
+     * {@link TipRenderView}上的动画结束后调用
+     */
+    void onRenderAnimationEnd() {
+        final boolean hiding = animState == ANIM_HIDING;
+        animState = ANIM_NONE;
+        if (hiding) {
+            shown = false;
+            setVisible(false, false);
+            notifyHideListener();
+        }
+    }
+
+    private void applyAnimation(float v) {
+        if (tipAnimation != null) {
+            tipAnimation.applyTransformation(v, mTransformation);
+            hasMatrix = !mTransformation.getMatrix().isIdentity();
+            animAlpha = (int) (mTransformation.getAlpha() * 255);
+            //有快照时只改变绘制快照的画笔
+            if (snapshot != null) {
+                snapshotPaint.setAlpha(animAlpha);
+                invalidateSelf();
+            } else {
+                setAlpha(animAlpha);
+            }
         }
     }
 
@@ -252,28 +707,77 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
 
     @Override
     public ITip hide(boolean needNotify) {
-        if (isVisible() && !inHidingAnim) {
+        if (deferred) {
+            //调用者在显示执行前隐藏，取消显示
+            deferredHide = true;
+            deferredShowDelay = -1;
+            deferredAutoHide = -1;
+            return this;
+        }
+        hideNow(needNotify);
+        return this;
+    }
+
+    /**
+     * 立即隐藏当前状态的tip，不记录到批量模式的队列中
+     * 由自动隐藏、手势及{@link TipViewLayout#hideAllTip()}等内部调用，
+     * 不会取消还在队列中的显示
+     */
+    void hideNow(boolean needNotify) {
+        if (timerWheel != null) {
+            timerWheel.cancel(showTimer);
+            timerWheel.cancel(hideTimer);
+        }
+        if (isVisible() && animState != ANIM_HIDING) {
             needNotifyListener = needNotify;
-            if (needAnim) {
-                initAnim(false);
-                inHidingAnim = true;
-                animator.start();
+            hideRemaining = -1;
+            if (needAnim && renderView != null && !suspended) {
+                animState = ANIM_HIDING;
+                renderView.animateTip(false, hideAnimTime, tipAnimation);
+            } else if (needAnim && animationDriver != null && !suspended) {
+                startAnimation(ANIM_HIDING);
             } else {
+                animState = ANIM_NONE;
+                releaseSnapshot();
+                if (renderView != null)
+                    renderView.cancelAnimation();
+                shown = false;
                 setVisible(false, false);
                 notifyHideListener();
             }
         }
-        return this;
     }
 
     @Override
     public ITip autoHide(long delay) {
-        if (delay > 0) {
-            scheduleSelf(hideTask, delay + SystemClock.uptimeMillis());
+        if (deferred) {
+            deferredAutoHide = delay;
+            return this;
+        }
+        if (suspended) {
+            hideRemaining = delay > 0 ? delay : -1;
+            return this;
+        }
+        if (delay > 0 && timerWheel != null) {
+            timerWheel.schedule(hideTimer, delay);
         }
         return this;
     }
 
+    @Override
+    public ITip showDelay(long delay) {
+        if (deferred) {
+            deferredHide = false;
+            deferredShowDelay = Math.max(delay, 0);
+            return this;
+        }
+        if (delay <= 0 || timerWheel == null) {
+            return show();
+        }
+        timerWheel.schedule(showTimer, delay);
+        return this;
+    }
+
     @Override
     public boolean isShowing() {
         return isVisible();
@@ -281,73 +785,157 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
 
     @Override
     public ITip setTipText(CharSequence text) {
-        if (text != null) {
-            textDrawable.setText(text);
-        } else {
-            textDrawable.setText(null);
+        final CharSequence old = textDrawable.getText();
+        textDrawable.setText(text);
+        if (textDrawable.getText() != old) {
+            layoutDirty = true;
+            invalidateSelf();
         }
-        invalidateSelf();
         return this;
     }
 
     @Override
     public ITip setTipTextSize(float size) {
-        textDrawable.setTextSize(size);
-        invalidateSelf();
+        if (textDrawable.getPaint().getTextSize() != size) {
+            textDrawable.setTextSize(size);
+            layoutDirty = true;
+            invalidateSelf();
+        }
         return this;
     }
 
     @Override
     public ITip setTipTextColor(@ColorInt int color) {
-        textDrawable.setTextColor(color);
-        invalidateSelf();
+        if (textDrawable.getPaint().getColor() != color) {
+            releaseSnapshot();
+            textDrawable.setTextColor(color);
+            invalidateSelf();
+        }
         return this;
     }
 
     @Override
     public ITip setTipTextPadding(int pl, int pt, int pr, int pb) {
-        paddingRect.set(pl, pt, pr, pb);
+        if (paddingRect.left != pl || paddingRect.top != pt || paddingRect.right != pr || paddingRect.bottom != pb) {
+            paddingRect.set(pl, pt, pr, pb);
+            layoutDirty = true;
+        }
         return this;
     }
 
     @Override
     public ITip setTriangleMargin(int margin) {
+        if (triangleMargin == margin)
+            return this;
         triangleMargin = margin;
         Rect bounds = getBounds();
         if (!bounds.isEmpty()) {
             onBoundsChange(bounds);
-            invalidateSelf();
         }
         return this;
     }
 
     @Override
     public ITip setTipBackgroundDrawable(Drawable drawable) {
-        background = drawable;
-        invalidateSelf();
+        if (background != drawable) {
+            background = drawable;
+            layoutDirty = true;
+            invalidateSelf();
+        }
         return this;
     }
 
+    public Drawable getTipBackgroundDrawable() {
+        return background;
+    }
+
     @Override
     public ITip setTriangleDrawable(Drawable drawable) {
-        triangle = drawable;
-        invalidateSelf();
+        if (triangle != drawable) {
+            triangle = drawable;
+            layoutDirty = true;
+            invalidateSelf();
+        }
         return this;
     }
 
+    public Drawable getTriangleDrawable() {
+        return triangle;
+    }
+
+    @Override
+    public ITip setBubbleDrawable(BubbleDrawable bubble) {
+        if (this.bubble != bubble) {
+            this.bubble = bubble;
+            if (bubble != null)
+                bubble.setDirection(direction);
+            layoutDirty = true;
+            invalidateSelf();
+        }
+        return this;
+    }
+
+    public BubbleDrawable getBubbleDrawable() {
+        return bubble;
+    }
+
     @Override
     public ITip setTriangleDirection(@TriangleDirection int direction) {
-        this.direction = direction;
-        invalidateSelf();
+        //AUTO由TipViewLayout布局时确定实际方向
+        if (direction != Triangle.AUTO && this.direction != direction) {
+            this.direction = direction;
+            if (bubble != null)
+                bubble.setDirection(direction);
+            layoutDirty = true;
+            invalidateSelf();
+        }
         return this;
     }
 
+    public
+    @TriangleDirection
+    int getTriangleDirection() {
+        return direction;
+    }
+
     @Override
     public ITip setOnTipHideListener(OnTipHideListener onTipHideListener) {
         this.onTipHideListener = onTipHideListener;
         return this;
     }
 
+    @Override
+    public ITip setOnTipClickListener(OnTipClickListener onTipClickListener) {
+        if (this.onTipClickListener != onTipClickListener) {
+            this.onTipClickListener = onTipClickListener;
+            final Callback callback = getCallback();
+            if (callback instanceof TipViewLayout) {
+                ((TipViewLayout) callback).onTipInteractionChanged();
+            }
+        }
+        return this;
+    }
+
+    public OnTipClickListener getOnTipClickListener() {
+        return onTipClickListener;
+    }
+
+    @Override
+    public ITip setDismissPolicy(@DismissPolicy int policy) {
+        if (dismissPolicy != policy) {
+            dismissPolicy = policy;
+            final Callback callback = getCallback();
+            if (callback instanceof TipViewLayout) {
+                ((TipViewLayout) callback).onTipInteractionChanged();
+            }
+        }
+        return this;
+    }
+
+    public int getDismissPolicy() {
+        return dismissPolicy;
+    }
+
     @Override
     public ITip setTranslateXY(float x, float y) {
         translateX = x;
@@ -356,22 +944,19 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
         return this;
     }
 
-    private Runnable hideTask = new Runnable() {
+    private final TipTimerWheel.Timer hideTimer = new TipTimerWheel.Timer() {
         @Override
-        public void run() {
-            hide();
+        void onTimeout() {
+            hideNow(true);
         }
     };
 
-    @Override
-    public void onAnimationUpdate(ValueAnimator animation) {
-        if (tipAnimation != null) {
-            final float v = (float) animation.getAnimatedValue();
-            tipAnimation.applyTransformation(v, mTransformation);
-            setAlpha((int) (mTransformation.getAlpha() * 255));
-            invalidateSelf();
+    private final TipTimerWheel.Timer showTimer = new TipTimerWheel.Timer() {
+        @Override
+        void onTimeout() {
+            show();
         }
-    }
+    };
 
     @Override
     public int getIntrinsicWidth() {
@@ -391,6 +976,93 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
         return textHeight;
     }
 
+    /**
+     * 计算tip在画布上实际占据的区域，包含translate及动画变换
+     * 不可见时为空
+     * @param out 输出区域
+     */
+    void getDrawingRect(Rect out) {
+        if (!isVisible() || suspended || getBounds().isEmpty()) {
+            out.setEmpty();
+            return;
+        }
+        tempRectF.set(getBounds());
+        tempRectF.offset(translateX, translateY);
+        mTransformation.getMatrix().mapRect(tempRectF);
+        tempRectF.roundOut(out);
+        //抗锯齿边缘
+        out.inset(-1, -1);
+    }
+
+    /**
+     * 批量模式下由{@link com.xfy.tipviewmanager.TipManager}调用
+     * 开始时记录之后对{@link #show()}、{@link #showDelay(long)}、{@link #hide()}及{@link #autoHide(long)}的调用，
+     * 结束后通过{@link #isDeferredHide()}等获取记录的结果
+     * @param deferred true: 开始记录；false: 结束记录
+     */
+    public void setDeferred(boolean deferred) {
+        if (deferred && !this.deferred) {
+            deferredHide = false;
+            deferredShowDelay = -1;
+            deferredAutoHide = -1;
+        }
+        this.deferred = deferred;
+    }
+
+    /**
+     * 记录期间是否调用过隐藏
+     */
+    public boolean isDeferredHide() {
+        return deferredHide;
+    }
+
+    /**
+     * 记录期间设置的显示延时，-1表示未设置
+     */
+    public long getDeferredShowDelay() {
+        return deferredShowDelay;
+    }
+
+    /**
+     * 记录期间设置的自动隐藏时间，-1表示未设置
+     */
+    public long getDeferredAutoHide() {
+        return deferredAutoHide;
+    }
+
+    float getTranslateX() {
+        return translateX;
+    }
+
+    float getTranslateY() {
+        return translateY;
+    }
+
+    /**
+     * 计算tip布局后占据的区域，包含translate，不包含动画变换
+     * 不可见时为空
+     * @param out 输出区域
+     */
+    void getPlacedRect(Rect out) {
+        if (!isVisible() || suspended || getBounds().isEmpty()) {
+            out.setEmpty();
+            return;
+        }
+        out.set(getBounds());
+        out.offset((int) translateX, (int) translateY);
+    }
+
+    /**
+     * 计算需要刷新的区域，为上一次绘制区域和当前绘制区域的并集
+     * 并将当前绘制区域记录为上一次绘制区域
+     * @param out 输出区域
+     */
+    void getDirtyRect(Rect out) {
+        out.set(drawnRect);
+        getDrawingRect(drawnRect);
+        out.union(drawnRect);
+    }
+
     public void setLayoutListener(LayoutListener listener) {
         this.layoutListener = listener;
     }
@@ -402,13 +1074,61 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
     }
 
     public int getTriangleWidth() {
+        if (bubble != null)
+            return bubble.getArrowWidth();
         return triangle != null ? triangle.getIntrinsicWidth() : 0;
     }
 
     public int getTriangleHeight() {
+        if (bubble != null)
+            return bubble.getArrowHeight();
         return triangle != null ? triangle.getIntrinsicHeight() : 0;
     }
 
+    /**
+     * 文字加边距的宽度，不包含三角形
+     */
+    int getContentWidth() {
+        return textDrawable.getIntrinsicWidth() + paddingRect.left + paddingRect.right;
+    }
+
+    /**
+     * 文字加边距的高度，不包含三角形
+     */
+    int getContentHeight() {
+        return textDrawable.getIntrinsicHeight() + paddingRect.top + paddingRect.bottom;
+    }
+
+    /**
+     * 三角形指向direction时，在指向方向上占据的距离
+     * 没有使用气泡时以当前三角形估算
+     */
+    int getArrowDepth(@TriangleDirection int direction) {
+        if (direction == Triangle.NONE)
+            return 0;
+        final boolean horizontal = direction == Triangle.LEFT || direction == Triangle.RIGHT;
+        if (bubble != null)
+            return bubble.getArrowDepth();
+        if (triangle == null)
+            return 0;
+        return horizontal ? triangle.getIntrinsicWidth() : triangle.getIntrinsicHeight();
+    }
+
+    /**
+     * 三角形指向direction时，底边的长度
+     * 没有使用气泡时以当前三角形估算
+     */
+    int getArrowBaseSize(@TriangleDirection int direction) {
+        if (direction == Triangle.NONE)
+            return 0;
+        final boolean horizontal = direction == Triangle.LEFT || direction == Triangle.RIGHT;
+        if (bubble != null)
+            return bubble.getArrowBaseSize();
+        if (triangle == null)
+            return 0;
+        return horizontal ? triangle.getIntrinsicHeight() : triangle.getIntrinsicWidth();
+    }
+
     private void notifyHideListener() {
         if (!needNotifyListener)
             return;
@@ -419,7 +1139,7 @@ public class NormalTip extends Drawable implements ITip, Touchable, ValueAnimato
 
     @Override
     public boolean isTouched(float x, float y) {
-        return getBounds().contains((int) x, (int) y);
+        return !suspended && getBounds().contains((int) x, (int) y);
     }
 
     @Override
@@ -1,12 +1,15 @@
 package com.xfy.tipviewmanager.tip;
 
 import android.graphics.Canvas;
+import android.graphics.Picture;
 import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
 
 /**
  * Created by XiongFangyu on 2017/7/25.
  */
-class NormalTipInfo {
+class NormalTipInfo implements View.OnAttachStateChangeListener {
 
     public NormalTip tip;
 
@@ -20,6 +23,46 @@ class NormalTipInfo {
 
     public int translateY;
 
+    /**
+     * tip指向的目标，及上一次读取的目标区域(窗口坐标)
+     */
+    TipAnchor anchor;
+    private Rect anchorRect;
+    private boolean watchAttach = false;
+
+    /**
+     * 登记在点击检测网格中的区域，为空表示未登记；绘制顺序，越大越靠上
+     * 由{@link TipViewLayout}维护
+     */
+    final Rect hitRect = new Rect();
+    int order;
+
+    /**
+     * 避免重叠时使用的位置及三角形边距，由{@link TipViewLayout}维护
+     */
+    final Rect layoutRect = new Rect();
+    int layoutMargin;
+    /**
+     * 不考虑重叠时的位置及三角形边距，每次布局时记录；
+     * 布局后还未处理重叠时为true
+     */
+    final Rect naturalRect = new Rect();
+    int naturalMargin;
+    boolean overlapDirty = true;
+
+    /**
+     * tip静止时绘制内容的录制，tip刷新后下次绘制时重新录制
+     * see {@link TipViewLayout#setRecordStaticTips(boolean)}
+     */
+    private Picture picture;
+    private final Rect pictureRect = new Rect();
+    boolean pictureDirty = true;
+
+    /**
+     * 绘制顺序链表，由{@link TipViewLayout}维护
+     */
+    NormalTipInfo prev, next;
+
     public NormalTipInfo() {
     }
 
@@ -41,10 +84,126 @@ class NormalTipInfo {
         this.direction = dir;
     }
 
-    public void draw(Canvas canvas) {
+    /**
+     * 布局参数是否和当前一致
+     */
+    public boolean isSameLayout(Rect viewRect, int tx, int ty, int dir) {
+        return this.viewRect.equals(viewRect) && translateX == tx && translateY == ty && direction == dir;
+    }
+
+    public void set(Rect viewRect, int tx, int ty, int dir) {
+        this.viewRect.set(viewRect);
+        this.translateX = tx;
+        this.translateY = ty;
+        this.direction = dir;
+    }
+
+    /**
+     * 设置tip指向的目标，并记录目标当前区域
+     */
+    void setAnchor(TipAnchor anchor) {
+        if (this.anchor != anchor && watchAttach) {
+            watchAttach(this.anchor, false);
+            watchAttach(anchor, true);
+        }
+        this.anchor = anchor;
+        if (anchor != null) {
+            if (anchorRect == null)
+                anchorRect = new Rect();
+            anchor.getAnchorRect(anchorRect);
+        }
+    }
+
+    /**
+     * 目标移动或大小改变时同步更新{@link #viewRect}
+     * @param rect 目标当前区域
+     * @return 是否改变
+     */
+    boolean moveAnchor(Rect rect) {
+        if (rect.equals(anchorRect))
+            return false;
+        viewRect.offset(rect.left - anchorRect.left, rect.top - anchorRect.top);
+        viewRect.right = viewRect.left + rect.width();
+        viewRect.bottom = viewRect.top + rect.height();
+        anchorRect.set(rect);
+        return true;
+    }
+
+    /**
+     * 是否监听view的attach状态，view从窗口移除时立即挂起tip
+     * 只对{@link ViewTipAnchor}有效
+     */
+    void setWatchAttach(boolean watch) {
+        if (watchAttach == watch)
+            return;
+        watchAttach = watch;
+        watchAttach(anchor, watch);
+    }
+
+    private void watchAttach(TipAnchor anchor, boolean watch) {
+        if (!(anchor instanceof ViewTipAnchor))
+            return;
+        //挂起不可见的tip时才需要检查view是否可见
+        ((ViewTipAnchor) anchor).setCheckVisible(watch);
+        final View view = ((ViewTipAnchor) anchor).getView();
+        if (watch) {
+            view.addOnAttachStateChangeListener(this);
+        } else {
+            view.removeOnAttachStateChangeListener(this);
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        //重新可见时由TipViewLayout在绘制前恢复
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
         if (tip != null) {
+            tip.setSuspended(true);
+        }
+    }
+
+    /**
+     * @param record true: tip静止时回放录制的内容
+     */
+    public void draw(Canvas canvas, boolean record) {
+        //由子view绘制的tip不在这里绘制
+        if (tip == null || tip.renderView != null)
+            return;
+        //动画中每帧都会改变，直接绘制；6.0以下硬件加速画布不支持Picture
+        if (!record || tip.isAnimating()
+                || (Build.VERSION.SDK_INT < Build.VERSION_CODES.M && canvas.isHardwareAccelerated())) {
+            pictureDirty = true;
             tip.draw(canvas);
+            return;
         }
+        if (pictureDirty || picture == null) {
+            pictureDirty = false;
+            tip.getDrawingRect(pictureRect);
+            if (pictureRect.isEmpty())
+                return;
+            if (picture == null)
+                picture = new Picture();
+            final Canvas c = picture.beginRecording(pictureRect.width(), pictureRect.height());
+            c.translate(-pictureRect.left, -pictureRect.top);
+            tip.draw(c);
+            picture.endRecording();
+        }
+        if (pictureRect.isEmpty())
+            return;
+        canvas.translate(pictureRect.left, pictureRect.top);
+        canvas.drawPicture(picture);
+        canvas.translate(-pictureRect.left, -pictureRect.top);
+    }
+
+    /**
+     * 释放录制的内容
+     */
+    void releasePicture() {
+        picture = null;
+        pictureDirty = true;
     }
 
     @Override
@@ -57,4 +216,9 @@ class NormalTipInfo {
         return tip != null ? tip.equals(that.tip) : that.tip == null;
 
     }
+
+    @Override
+    public int hashCode() {
+        return tip != null ? tip.hashCode() : 0;
+    }
 }
@@ -0,0 +1,13 @@
+package com.xfy.tipviewmanager.tip;
+
+/**
+ * tip点击监听
+ * 设置后点击此tip不再自动隐藏，且即使没有设置{@link TipViewLayout#setHandleEvent(boolean)}，
+ * 点击在此tip内的手势也不会穿透
+ */
+public interface OnTipClickListener {
+    /**
+     * tip被点击了
+     */
+    void onTipClick(ITip tip);
+}
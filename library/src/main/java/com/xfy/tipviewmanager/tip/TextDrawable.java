@@ -29,6 +29,18 @@ public class TextDrawable extends Drawable {
 
     private LayoutListener layoutListener;
 
+    /**
+     * 测量结果，文字或画笔改变前一直有效
+     */
+    private boolean measured = false;
+    private float measuredWidth;
+    private float measuredHeight;
+    private float baselineOffset;
+    /**
+     * text.toString()的缓存，避免绘制时分配
+     */
+    private String textString;
+
     public TextDrawable() {
         textPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
     }
@@ -37,14 +49,19 @@ public class TextDrawable extends Drawable {
     public void draw(@NonNull Canvas canvas) {
         if (TextUtils.isEmpty(text))
             return;
-        Rect bounds = getBounds();
         final float left = getTextLeft();
         final float y = getTextY();
-        canvas.save();
+        final String str = getTextString();
+        if (translateX == 0 && translateY == 0 && scale == 1) {
+            canvas.drawText(str, left, y, textPaint);
+            return;
+        }
+        Rect bounds = getBounds();
+        final int save = canvas.save();
         canvas.translate(translateX, translateY);
         canvas.scale(scale, scale, bounds.centerX(), bounds.centerY());
-        canvas.drawText(text.toString(), left, y, textPaint);
-        canvas.restore();
+        canvas.drawText(str, left, y, textPaint);
+        canvas.restoreToCount(save);
     }
 
     public float getTextLeft() {
@@ -54,10 +71,8 @@ public class TextDrawable extends Drawable {
     }
 
     public float getTextY() {
-        Rect bounds = getBounds();
-        final Paint.FontMetrics metrics = textPaint.getFontMetrics();
-        final float height = metrics.bottom - metrics.top;
-        return height / 2 - metrics.bottom + bounds.centerY();
+        ensureMeasured();
+        return baselineOffset + getBounds().centerY();
     }
 
     @Override
@@ -88,6 +103,7 @@ public class TextDrawable extends Drawable {
         if (isTextSame(this.text, text))
             return;
         this.text = text;
+        invalidateMeasure();
         invalidateSelf();
     }
 
@@ -96,14 +112,17 @@ public class TextDrawable extends Drawable {
     }
 
     public void setTextSize(float px) {
-        if (textPaint != null)
-            textPaint.setTextSize(px);
+        if (textPaint == null || textPaint.getTextSize() == px)
+            return;
+        textPaint.setTextSize(px);
+        invalidateMeasure();
         invalidateSelf();
     }
 
     public void setTextColor(int color) {
-        if (textPaint != null)
-            textPaint.setColor(color);
+        if (textPaint == null || textPaint.getColor() == color)
+            return;
+        textPaint.setColor(color);
         invalidateSelf();
     }
 
@@ -125,10 +144,34 @@ public class TextDrawable extends Drawable {
         invalidateSelf();
     }
 
+    /**
+     * 通过此方法修改字体、字号等影响文字大小的属性后，需调用{@link #invalidateMeasure()}
+     */
     public Paint getPaint() {
         return textPaint;
     }
 
+    /**
+     * 是否可以直接绘制出文字，子类在第一次绘制时才确定布局的返回false
+     */
+    public boolean isLayoutReady() {
+        return true;
+    }
+
+    /**
+     * 文字或画笔改变后，清除已缓存的测量结果
+     */
+    public void invalidateMeasure() {
+        measured = false;
+        textString = null;
+    }
+
+    private String getTextString() {
+        if (textString == null && text != null)
+            textString = text.toString();
+        return textString;
+    }
+
     public float getTranslateX() {
         return translateX;
     }
@@ -192,15 +235,23 @@ public class TextDrawable extends Drawable {
     }
 
     private float getMeasureTextWidth() {
-        if (TextUtils.isEmpty(text))
-            return 0;
-        return textPaint.measureText(text.toString());
+        ensureMeasured();
+        return measuredWidth;
     }
 
     private float getMeasureTextHeight() {
-        final Paint.FontMetrics metrics = textPaint.getFontMetrics();
-        final float height = metrics.bottom - metrics.top;
-        return height;
+        ensureMeasured();
+        return measuredHeight;
+    }
+
+    private void ensureMeasured() {
+        if (measured)
+            return;
+        final Paint.FontMetrics metrics = TextMeasureCache.getFontMetrics(textPaint);
+        measuredHeight = metrics.bottom - metrics.top;
+        baselineOffset = measuredHeight / 2 - metrics.bottom;
+        measuredWidth = TextUtils.isEmpty(text) ? 0 : TextMeasureCache.measureText(textPaint, getTextString());
+        measured = true;
     }
 
     protected boolean isTextSame(CharSequence t1, CharSequence t2) {
@@ -0,0 +1,126 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文字测量结果缓存，进程内所有{@link TextDrawable}共享
+ * 以文字、字号、字体及字间距为key，超过容量时淘汰最久未使用的结果
+ * 查询时复用同一个key对象，命中时不产生对象分配，故只能在主线程使用
+ */
+final class TextMeasureCache {
+    private static final int MAX_WIDTH_COUNT = 256;
+    private static final int MAX_METRICS_COUNT = 16;
+
+    private static final LruMap<Key, Float> widthCache = new LruMap<>(MAX_WIDTH_COUNT);
+    /**
+     * 行高只和字号、字体有关，单独缓存
+     */
+    private static final LruMap<Key, Paint.FontMetrics> metricsCache = new LruMap<>(MAX_METRICS_COUNT);
+    private static final Key lookupKey = new Key();
+
+    private TextMeasureCache() {}
+
+    /**
+     * 获取文字宽度，未命中时调用{@link Paint#measureText(String)}并缓存
+     * @param paint 测量使用的画笔
+     * @param text  文字
+     * @return 文字宽度
+     */
+    static float measureText(Paint paint, String text) {
+        lookupKey.set(text, paint);
+        Float width = widthCache.get(lookupKey);
+        if (width != null)
+            return width;
+        final float w = paint.measureText(text);
+        widthCache.put(lookupKey.copy(), w);
+        return w;
+    }
+
+    /**
+     * 获取字体信息，返回的对象是共享的，不可修改
+     * @param paint 测量使用的画笔
+     * @return 字体信息
+     */
+    static Paint.FontMetrics getFontMetrics(Paint paint) {
+        lookupKey.set(null, paint);
+        Paint.FontMetrics metrics = metricsCache.get(lookupKey);
+        if (metrics == null) {
+            metrics = paint.getFontMetrics();
+            metricsCache.put(lookupKey.copy(), metrics);
+        }
+        return metrics;
+    }
+
+    static void clear() {
+        widthCache.clear();
+        metricsCache.clear();
+    }
+
+    private static final class Key {
+        String text;
+        float textSize;
+        Typeface typeface;
+        float letterSpacing;
+        int hash;
+
+        void set(String text, Paint paint) {
+            this.text = text;
+            this.textSize = paint.getTextSize();
+            this.typeface = paint.getTypeface();
+            this.letterSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+            int h = text != null ? text.hashCode() : 0;
+            h = 31 * h + Float.floatToIntBits(textSize);
+            h = 31 * h + (typeface != null ? typeface.hashCode() : 0);
+            h = 31 * h + Float.floatToIntBits(letterSpacing);
+            this.hash = h;
+        }
+
+        Key copy() {
+            Key k = new Key();
+            k.text = text;
+            k.textSize = textSize;
+            k.typeface = typeface;
+            k.letterSpacing = letterSpacing;
+            k.hash = hash;
+            return k;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+
+            return hash == that.hash
+                    && textSize == that.textSize
+                    && letterSpacing == that.letterSpacing
+                    && (typeface != null ? typeface.equals(that.typeface) : that.typeface == null)
+                    && (text != null ? text.equals(that.text) : that.text == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxCount;
+
+        LruMap(int maxCount) {
+            super(maxCount, 0.75f, true);
+            this.maxCount = maxCount;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxCount;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.graphics.Rect;
+
+/**
+ * tip指向的目标，可以是一个view，也可以是自定义view中绘制的某个区域(eg: 图表中的点，地图标记)
+ * 开启{@link TipViewLayout#setTrackAnchor(boolean)}后，每一帧绘制前读取一次位置，位置改变时移动tip
+ *
+ * see {@link ViewTipAnchor}
+ */
+public interface TipAnchor {
+
+    /**
+     * 将目标当前的区域写入out，坐标为所在窗口的坐标(同{@link android.view.View#getLocationInWindow(int[])})
+     * 每一帧都可能调用，不要在此方法中创建对象
+     * @param out 输出区域
+     * @return false: 目标当前不可见
+     */
+    boolean getAnchorRect(Rect out);
+}
@@ -0,0 +1,100 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * 同一个{@link TipViewLayout}中所有tip共用的动画驱动
+ * 每一帧由{@link Choreographer}回调一次，依次推进所有正在动画的tip，
+ * 这一帧产生的刷新区域合并后只刷新一次
+ */
+final class TipAnimationDriver implements Choreographer.FrameCallback {
+    private final TipViewLayout host;
+    private final ArrayList<NormalTip> animatingTips = new ArrayList<>();
+    private boolean posted = false;
+    /**
+     * 回调tip过程中(eg: 隐藏监听中解绑)可能取消所有动画，此时列表只做标记，回调结束后统一整理
+     */
+    private boolean dispatching = false;
+
+    TipAnimationDriver(TipViewLayout host) {
+        this.host = host;
+    }
+
+    /**
+     * 开始驱动tip动画，tip已在驱动中时不会重复加入
+     */
+    void start(NormalTip tip) {
+        if (!tip.inAnimationDriver) {
+            tip.inAnimationDriver = true;
+            animatingTips.add(tip);
+        }
+        postFrame();
+    }
+
+    /**
+     * 停止所有动画，不回调动画结束
+     */
+    void cancelAll() {
+        for (int i = 0, l = animatingTips.size(); i < l; i++) {
+            final NormalTip tip = animatingTips.get(i);
+            if (tip != null)
+                tip.inAnimationDriver = false;
+        }
+        if (!dispatching)
+            animatingTips.clear();
+        if (posted) {
+            posted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    boolean isRunning() {
+        return !animatingTips.isEmpty();
+    }
+
+    private void postFrame() {
+        if (!posted) {
+            posted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        final long now = frameTimeNanos / 1000000;
+        final ArrayList<NormalTip> tips = animatingTips;
+        final int size = tips.size();
+        dispatching = true;
+        host.beginInvalidateBatch();
+        for (int i = 0; i < size; i++) {
+            final NormalTip tip = tips.get(i);
+            //这一帧中已被取消
+            if (tip == null || !tip.inAnimationDriver)
+                continue;
+            if (!tip.stepAnimation(now)) {
+                tip.inAnimationDriver = false;
+                tips.set(i, null);
+                //结束回调中可能重新开始动画或取消所有动画，新加入的tip在列表末尾
+                tip.onAnimationFinished();
+            }
+        }
+        host.endInvalidateBatch();
+        dispatching = false;
+        //只保留仍在驱动中的tip
+        int keep = 0;
+        for (int i = 0, l = tips.size(); i < l; i++) {
+            final NormalTip tip = tips.get(i);
+            if (tip != null && tip.inAnimationDriver)
+                tips.set(keep++, tip);
+        }
+        for (int i = tips.size() - 1; i >= keep; i--) {
+            tips.remove(i);
+        }
+        if (keep > 0) {
+            postFrame();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewTreeObserver;
+
+/**
+ * 按手势类型隐藏tip，每个手势只判断一次，判断后由{@link TipViewLayout#applyDismiss(int, NormalTip)}
+ * 按每个tip的{@link ITip.Dismiss}策略统一处理
+ *
+ * {@link TipViewLayout}接收了整个手势时(处理手势或按在可点击的tip上)，抬起或取消时根据移动距离及速度
+ * 区分点击、滑动和fling；
+ * 手势穿透时只能收到按下事件，收不到抬起：
+ * 通过{@link ViewTreeObserver.OnScrollChangedListener}收到滚动时判断为滑动(无法区分fling)，
+ * 按下后{@link ViewConfiguration#getLongPressTimeout()}内没有滚动的手势判断为点击；
+ * 在此之前开始下一次手势时，上一次手势立即判断为点击
+ */
+final class TipDismissEngine implements ViewTreeObserver.OnScrollChangedListener {
+    static final int GESTURE_TAP_INSIDE = 1;
+    static final int GESTURE_TAP_OUTSIDE = 2;
+    static final int GESTURE_SCROLL = 3;
+    static final int GESTURE_FLING = 4;
+
+    private final TipViewLayout host;
+    private final int touchSlop;
+    private final int minFlingVelocity;
+    private final int maxFlingVelocity;
+
+    /**
+     * 当前手势是否还未判断类型
+     */
+    private boolean pending = false;
+    private boolean scrolled = false;
+    private NormalTip downTip;
+    private float downX, downY;
+    /**
+     * 当前手势是否穿透，穿透时收不到后续事件
+     */
+    private boolean passThrough = false;
+    private VelocityTracker velocityTracker;
+    private ViewTreeObserver observer;
+    private final long tapTimeout;
+    /**
+     * {@link TipViewLayout.Host#OVERLAY}模式下host不在窗口中，不能通过view发消息
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /**
+     * 穿透的手势按下后一段时间内没有滚动，判断为点击
+     */
+    private final Runnable tapCheck = new Runnable() {
+        @Override
+        public void run() {
+            settle();
+        }
+    };
+
+    TipDismissEngine(TipViewLayout host) {
+        this.host = host;
+        final ViewConfiguration vc = ViewConfiguration.get(host.getContext());
+        touchSlop = vc.getScaledTouchSlop();
+        minFlingVelocity = vc.getScaledMinimumFlingVelocity();
+        maxFlingVelocity = vc.getScaledMaximumFlingVelocity();
+        tapTimeout = ViewConfiguration.getLongPressTimeout();
+    }
+
+    /**
+     * 手势开始
+     * @param tip       按下位置的tip
+     * @param full      是否会收到整个手势
+     * @param container 手势穿透时用于监听滑动的view
+     */
+    void onDown(MotionEvent event, NormalTip tip, boolean full, View container) {
+        cancel();
+        pending = true;
+        passThrough = !full;
+        scrolled = false;
+        downTip = tip;
+        downX = event.getX();
+        downY = event.getY();
+        if (full) {
+            if (velocityTracker == null)
+                velocityTracker = VelocityTracker.obtain();
+            velocityTracker.addMovement(event);
+            return;
+        }
+        handler.postDelayed(tapCheck, tapTimeout);
+        if (container == null)
+            return;
+        observer = container.getViewTreeObserver();
+        observer.addOnScrollChangedListener(this);
+    }
+
+    /**
+     * 穿透的手势没有滚动，视为点击
+     * 按下后超时或新手势开始前调用
+     */
+    void settle() {
+        if (pending && passThrough)
+            classify(downTip != null ? GESTURE_TAP_INSIDE : GESTURE_TAP_OUTSIDE);
+    }
+
+    void onMove(MotionEvent event) {
+        if (velocityTracker != null)
+            velocityTracker.addMovement(event);
+        if (!pending || scrolled)
+            return;
+        //超过touch slop后视为滑动，抬起时根据速度区分滑动和fling
+        final float dx = event.getX() - downX;
+        final float dy = event.getY() - downY;
+        if (dx * dx + dy * dy > touchSlop * touchSlop) {
+            scrolled = true;
+        }
+    }
+
+    void onUp(MotionEvent event) {
+        if (velocityTracker != null) {
+            velocityTracker.addMovement(event);
+            if (pending) {
+                if (scrolled) {
+                    velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+                    final float vx = velocityTracker.getXVelocity();
+                    final float vy = velocityTracker.getYVelocity();
+                    final boolean fling = vx * vx + vy * vy > minFlingVelocity * minFlingVelocity;
+                    classify(fling ? GESTURE_FLING : GESTURE_SCROLL);
+                } else {
+                    classify(downTip != null ? GESTURE_TAP_INSIDE : GESTURE_TAP_OUTSIDE);
+                }
+            }
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    /**
+     * 本次手势是否已判断为滑动
+     */
+    boolean isScrolled() {
+        return scrolled;
+    }
+
+    /**
+     * 取消还未判断的手势
+     */
+    void cancel() {
+        pending = false;
+        passThrough = false;
+        downTip = null;
+        stopWatching();
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    private void stopWatching() {
+        handler.removeCallbacks(tapCheck);
+        if (observer != null) {
+            if (observer.isAlive())
+                observer.removeOnScrollChangedListener(this);
+            observer = null;
+        }
+    }
+
+    private void classify(int gesture) {
+        final NormalTip tip = downTip;
+        pending = false;
+        passThrough = false;
+        downTip = null;
+        stopWatching();
+        host.applyDismiss(gesture, tip);
+    }
+
+    @Override
+    public void onScrollChanged() {
+        if (pending) {
+            scrolled = true;
+            classify(GESTURE_SCROLL);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+
+/**
+ * 显示中tip的均匀网格索引，用于点击检测
+ * 每个tip按其区域({@link NormalTipInfo#hitRect})登记到覆盖的格子中，区域改变时只更新涉及的格子，
+ * 检测时只需要查找点所在的格子
+ */
+final class TipHitGrid {
+    private static final int CELL_SIZE = 128;
+
+    private int width, height;
+    private int columns, rows;
+    private ArrayList<NormalTipInfo>[] cells;
+    /**
+     * 登记在网格中的tip个数
+     */
+    private int count = 0;
+
+    /**
+     * 网格覆盖的区域是否需要改变，改变后需重新登记所有tip
+     */
+    boolean isSizeChanged(int width, int height) {
+        return cells == null || this.width != width || this.height != height;
+    }
+
+    @SuppressWarnings("unchecked")
+    void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        cells = new ArrayList[columns * rows];
+        count = 0;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 将tip从旧区域移到新区域
+     * @param rect 新区域，为空时从网格中移除
+     */
+    void update(NormalTipInfo info, Rect rect) {
+        remove(info);
+        if (rect.isEmpty() || cells == null)
+            return;
+        info.hitRect.set(rect);
+        final int c0 = column(rect.left), c1 = column(rect.right - 1);
+        final int r0 = row(rect.top), r1 = row(rect.bottom - 1);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                final int i = r * columns + c;
+                ArrayList<NormalTipInfo> cell = cells[i];
+                if (cell == null) {
+                    cell = new ArrayList<>(2);
+                    cells[i] = cell;
+                }
+                cell.add(info);
+            }
+        }
+        count++;
+    }
+
+    void remove(NormalTipInfo info) {
+        final Rect rect = info.hitRect;
+        if (rect.isEmpty())
+            return;
+        if (cells != null) {
+            final int c0 = column(rect.left), c1 = column(rect.right - 1);
+            final int r0 = row(rect.top), r1 = row(rect.bottom - 1);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    final ArrayList<NormalTipInfo> cell = cells[r * columns + c];
+                    if (cell != null)
+                        cell.remove(info);
+                }
+            }
+            count--;
+        }
+        rect.setEmpty();
+    }
+
+    void clear() {
+        cells = null;
+        count = 0;
+    }
+
+    /**
+     * 查找包含点的tip，有多个时返回最后绘制(最上层)的
+     */
+    NormalTipInfo hitTest(int x, int y) {
+        if (count == 0 || cells == null)
+            return null;
+        final ArrayList<NormalTipInfo> cell = cells[row(y) * columns + column(x)];
+        if (cell == null)
+            return null;
+        NormalTipInfo hit = null;
+        for (int i = 0, l = cell.size(); i < l; i++) {
+            final NormalTipInfo info = cell.get(i);
+            if (info.hitRect.contains(x, y) && (hit == null || info.order > hit.order))
+                hit = info;
+        }
+        return hit;
+    }
+
+    private int column(int x) {
+        final int c = x / CELL_SIZE;
+        return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+    }
+
+    private int row(int y) {
+        final int r = y / CELL_SIZE;
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
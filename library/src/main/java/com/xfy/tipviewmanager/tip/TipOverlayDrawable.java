@@ -0,0 +1,37 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * {@link TipViewLayout.Host#OVERLAY}模式下添加到容器ViewGroupOverlay中的drawable
+ * 大小和容器一致，绘制时由{@link TipViewLayout}绘制所有tip
+ */
+final class TipOverlayDrawable extends android.graphics.drawable.Drawable {
+    private final TipViewLayout host;
+
+    TipOverlayDrawable(TipViewLayout host) {
+        this.host = host;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        host.drawTips(canvas);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,126 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 进程内共享的tip回收池，以tip的类区分
+ * 删除的tip重置后放入池中，显示新tip时优先复用，避免切换页面时不断创建{@link NormalTip}及其中的drawable、画笔等对象
+ * 每个类最多保存{@link #setMaxPoolSize(int)}个；重置后的tip不持有文字、快照bitmap、录制内容及带bitmap的drawable，
+ * 只保留固定大小的对象，池的内存由个数限制
+ *
+ * 回收后tip对象会被其他view复用，调用者不可再持有删除前得到的{@link ITip}，
+ * 之后对它的调用(eg: {@link ITip#hide()}、{@link ITip#autoHide(long)})会作用在其他view的tip上
+ * 只能在主线程使用
+ */
+public final class TipPool {
+    private static final HashMap<Class<?>, ArrayList<NormalTip>> pool = new HashMap<>();
+    private static int maxPoolSize = 8;
+
+    private static int prewarmCount = 0;
+    private static final MessageQueue.IdleHandler prewarmHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            //每次空闲只创建一个，不占用太长时间
+            if (prewarmCount <= 0 || size(NormalTip.class) >= maxPoolSize || !put(newTip(new NormalTip()))) {
+                prewarmCount = 0;
+                return false;
+            }
+            return --prewarmCount > 0;
+        }
+    };
+
+    private TipPool() {}
+
+    /**
+     * 设置每种tip最多保存的个数
+     * @param size 为0时不再回收
+     */
+    public static void setMaxPoolSize(int size) {
+        maxPoolSize = size;
+        if (size <= 0)
+            clear();
+    }
+
+    public static NormalTip obtainNormalTip() {
+        final NormalTip tip = obtain(NormalTip.class);
+        return tip != null ? tip : newTip(new NormalTip());
+    }
+
+    public static AdvancedTip obtainAdvancedTip() {
+        final AdvancedTip tip = obtain(AdvancedTip.class);
+        return tip != null ? tip : newTip(new AdvancedTip());
+    }
+
+    /**
+     * 新建的tip与回收重置后的一致，在调用{@link ITip#show()}前不绘制
+     */
+    private static <T extends NormalTip> T newTip(T tip) {
+        tip.setVisible(false, false);
+        return tip;
+    }
+
+    private static <T extends NormalTip> T obtain(Class<T> clazz) {
+        final ArrayList<NormalTip> list = pool.get(clazz);
+        if (list == null || list.isEmpty())
+            return null;
+        return clazz.cast(list.remove(list.size() - 1));
+    }
+
+    /**
+     * 回收已从{@link TipViewLayout}中删除的tip，回收后不可再使用
+     * 动画驱动中还未移除的tip不回收
+     * @param tip 需要回收的tip
+     */
+    public static void recycle(ITip tip) {
+        if (!(tip instanceof NormalTip))
+            return;
+        final NormalTip nt = (NormalTip) tip;
+        if (nt.inAnimationDriver || nt.getCallback() != null)
+            return;
+        nt.reset();
+        put(nt);
+    }
+
+    private static boolean put(NormalTip tip) {
+        ArrayList<NormalTip> list = pool.get(tip.getClass());
+        if (list == null) {
+            list = new ArrayList<>(maxPoolSize);
+            pool.put(tip.getClass(), list);
+        }
+        if (list.size() >= maxPoolSize || list.contains(tip))
+            return false;
+        list.add(tip);
+        return true;
+    }
+
+    private static int size(Class<?> clazz) {
+        final ArrayList<NormalTip> list = pool.get(clazz);
+        return list != null ? list.size() : 0;
+    }
+
+    /**
+     * 在主线程空闲时预先创建普通tip放入池中，每次空闲创建一个
+     * 需在主线程调用
+     * @param count 预先创建的个数，不超过池的容量
+     */
+    public static void prewarm(int count) {
+        if (count <= 0 || maxPoolSize <= 0 || Looper.myLooper() != Looper.getMainLooper())
+            return;
+        final boolean added = prewarmCount > 0;
+        prewarmCount = Math.max(prewarmCount, count);
+        if (!added)
+            Looper.myQueue().addIdleHandler(prewarmHandler);
+    }
+
+    public static void clear() {
+        pool.clear();
+        if (prewarmCount > 0) {
+            prewarmCount = 0;
+            Looper.myQueue().removeIdleHandler(prewarmHandler);
+        }
+    }
+}
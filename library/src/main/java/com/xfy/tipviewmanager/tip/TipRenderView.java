@@ -0,0 +1,146 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.Transformation;
+
+import com.xfy.tipviewmanager.anim.ITipAnimation;
+
+/**
+ * {@link TipViewLayout#setLayerAnimation(boolean)}开启后，每个tip对应的子view
+ * 显示隐藏动画通过{@link android.view.ViewPropertyAnimator}改变view属性，动画期间使用硬件层，
+ * tip内容只绘制一次，每帧只合成硬件层
+ *
+ * {@link ITipAnimation}只在0和1两处取值，映射为透明度、缩放及平移，中间线性过渡；
+ * 矩阵中的旋转和错切不生效
+ */
+final class TipRenderView extends View {
+    private static final LinearInterpolator LINEAR = new LinearInterpolator();
+
+    private final NormalTip tip;
+    private final Transformation tempTransformation = new Transformation();
+    private final float[] matrixValues = new float[9];
+    private final Rect placedRect = new Rect();
+    /**
+     * tip在父view中的坐标偏移，WINDOW模式下为窗口位置
+     */
+    private int offsetX, offsetY;
+    private boolean animating = false;
+
+    private final Runnable endAction = new Runnable() {
+        @Override
+        public void run() {
+            animating = false;
+            tip.onRenderAnimationEnd();
+        }
+    };
+
+    TipRenderView(Context context, NormalTip tip) {
+        super(context);
+        this.tip = tip;
+        setWillNotDraw(false);
+        setPivotX(0);
+        setPivotY(0);
+    }
+
+    NormalTip getTip() {
+        return tip;
+    }
+
+    /**
+     * 按tip布局后的位置放置此view，不触发requestLayout
+     */
+    void update(int offsetX, int offsetY) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        final Rect bounds = tip.getBounds();
+        placedRect.set(bounds);
+        placedRect.offset((int) tip.getTranslateX(), (int) tip.getTranslateY());
+        placedRect.offset(-offsetX, -offsetY);
+        if (getLeft() != placedRect.left || getTop() != placedRect.top
+                || getRight() != placedRect.right || getBottom() != placedRect.bottom) {
+            layout(placedRect.left, placedRect.top, placedRect.right, placedRect.bottom);
+        }
+        invalidate();
+    }
+
+    /**
+     * 父view布局后恢复位置
+     */
+    void relayout() {
+        layout(placedRect.left, placedRect.top, placedRect.right, placedRect.bottom);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.translate(-offsetX - getLeft(), -offsetY - getTop());
+        tip.draw(canvas);
+    }
+
+    /**
+     * 开始显示或隐藏动画，正在动画时从当前状态继续
+     * @param showing   true: 显示动画
+     * @param duration  动画时长
+     * @param animation 为空时只等待动画时长
+     */
+    void animateTip(boolean showing, long duration, ITipAnimation animation) {
+        if (!animating) {
+            applyProperties(animation, showing ? 0 : 1, false);
+        }
+        animating = true;
+        applyProperties(animation, showing ? 1 : 0, true);
+        animate().setDuration(duration)
+                .setInterpolator(LINEAR)
+                .withLayer()
+                .withEndAction(endAction)
+                .start();
+    }
+
+    /**
+     * 取消动画并恢复为无变换状态
+     */
+    void cancelAnimation() {
+        animating = false;
+        animate().cancel();
+        setAlpha(1);
+        setScaleX(1);
+        setScaleY(1);
+        setTranslationX(0);
+        setTranslationY(0);
+    }
+
+    /**
+     * 将{@link ITipAnimation}在percent处的变换映射为view属性
+     * 动画矩阵作用在父view坐标上，以view左上角为缩放中心时需补偿平移：
+     * s * p + t = s * (p - left) + left + translation
+     */
+    private void applyProperties(ITipAnimation animation, float percent, boolean animate) {
+        float alpha = 1, sx = 1, sy = 1, tx = 0, ty = 0;
+        if (animation != null) {
+            tempTransformation.clear();
+            animation.applyTransformation(percent, tempTransformation);
+            alpha = tempTransformation.getAlpha();
+            final Matrix matrix = tempTransformation.getMatrix();
+            if (!matrix.isIdentity()) {
+                matrix.getValues(matrixValues);
+                sx = matrixValues[Matrix.MSCALE_X];
+                sy = matrixValues[Matrix.MSCALE_Y];
+                tx = matrixValues[Matrix.MTRANS_X] - (1 - sx) * (getLeft() + offsetX);
+                ty = matrixValues[Matrix.MTRANS_Y] - (1 - sy) * (getTop() + offsetY);
+            }
+        }
+        if (animate) {
+            animate().alpha(alpha).scaleX(sx).scaleY(sy).translationX(tx).translationY(ty);
+            return;
+        }
+        setAlpha(alpha);
+        setScaleX(sx);
+        setScaleY(sy);
+        setTranslationX(tx);
+        setTranslationY(ty);
+    }
+}
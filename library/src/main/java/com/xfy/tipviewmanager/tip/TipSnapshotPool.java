@@ -0,0 +1,126 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.ArrayList;
+
+/**
+ * tip动画快照使用的bitmap池，进程内共享
+ * 动画结束后bitmap回到池中，总大小超过上限时回收最早放入的；
+ * 内存紧张时({@link ComponentCallbacks2#onTrimMemory(int)})清空
+ * 只能在主线程使用
+ */
+final class TipSnapshotPool {
+    private static final int MAX_POOL_BYTES = 2 * 1024 * 1024;
+    /**
+     * 复用的bitmap面积最多为需要面积的倍数，避免小tip占用大bitmap
+     */
+    private static final int MAX_AREA_SCALE = 2;
+
+    private static final ArrayList<Bitmap> pool = new ArrayList<>();
+    private static int poolBytes = 0;
+    private static Canvas canvas;
+    private static TrimCallbacks trimCallbacks;
+
+    private TipSnapshotPool() {}
+
+    /**
+     * 注册内存回调，多次调用只注册一次
+     */
+    static void register(Context context) {
+        if (trimCallbacks != null || context == null)
+            return;
+        final Context app = context.getApplicationContext();
+        trimCallbacks = new TrimCallbacks();
+        (app != null ? app : context).registerComponentCallbacks(trimCallbacks);
+    }
+
+    /**
+     * 获取一个至少为w*h的透明bitmap
+     * @return 内存不足时返回null
+     */
+    static Bitmap acquire(int w, int h) {
+        final int area = w * h;
+        int best = -1;
+        int bestArea = Integer.MAX_VALUE;
+        for (int i = 0, l = pool.size(); i < l; i++) {
+            final Bitmap b = pool.get(i);
+            final int a = b.getWidth() * b.getHeight();
+            if (b.getWidth() >= w && b.getHeight() >= h && a <= area * MAX_AREA_SCALE && a < bestArea) {
+                best = i;
+                bestArea = a;
+            }
+        }
+        if (best >= 0) {
+            final Bitmap b = pool.remove(best);
+            poolBytes -= b.getByteCount();
+            b.eraseColor(0);
+            return b;
+        }
+        try {
+            return Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            clear();
+            return null;
+        }
+    }
+
+    /**
+     * 归还bitmap，放不下时直接回收
+     */
+    static void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled())
+            return;
+        final int bytes = bitmap.getByteCount();
+        if (bytes > MAX_POOL_BYTES) {
+            bitmap.recycle();
+            return;
+        }
+        while (poolBytes + bytes > MAX_POOL_BYTES && !pool.isEmpty()) {
+            final Bitmap old = pool.remove(0);
+            poolBytes -= old.getByteCount();
+            old.recycle();
+        }
+        pool.add(bitmap);
+        poolBytes += bytes;
+    }
+
+    /**
+     * 获取绘制到bitmap的画布，画布是共享的，绘制完成后调用{@link Canvas#setBitmap(Bitmap)}传null
+     */
+    static Canvas getCanvas(Bitmap bitmap) {
+        if (canvas == null)
+            canvas = new Canvas();
+        canvas.setBitmap(bitmap);
+        return canvas;
+    }
+
+    static void clear() {
+        for (int i = 0, l = pool.size(); i < l; i++) {
+            pool.get(i).recycle();
+        }
+        pool.clear();
+        poolBytes = 0;
+    }
+
+    private static final class TrimCallbacks implements ComponentCallbacks2 {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW)
+                clear();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+        }
+    }
+}
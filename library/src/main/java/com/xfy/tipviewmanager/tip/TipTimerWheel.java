@@ -0,0 +1,192 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * 同一个{@link TipViewLayout}中所有tip共用的定时器，用于自动隐藏及延时显示
+ * 哈希时间轮实现，每格为一帧的时间，同一帧内到期的定时器一起触发
+ * 所有定时器共用一个Handler消息，添加、取消、重新设置均为O(1)
+ * 只能在主线程使用
+ */
+final class TipTimerWheel implements Runnable {
+    /**
+     * 每格时间，单位ms
+     */
+    private static final long TICK = 16;
+    private static final int SLOT_COUNT = 64;
+    private static final int MASK = SLOT_COUNT - 1;
+    private static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * 定时器，以双向链表的形式挂在时间轮的格子上
+     */
+    static abstract class Timer {
+        private Timer prev, next;
+        private long deadlineTick;
+        private long deadline;
+        private boolean scheduled;
+
+        boolean isScheduled() {
+            return scheduled;
+        }
+
+        /**
+         * 距离到期还有多少ms，未设置时返回-1
+         */
+        long getRemaining(long now) {
+            return scheduled ? Math.max(0, deadline - now) : -1;
+        }
+
+        abstract void onTimeout();
+    }
+
+    private final TipViewLayout host;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Timer[] slots = new Timer[SLOT_COUNT];
+    private final ArrayList<Timer> expired = new ArrayList<>();
+    private int count = 0;
+    /**
+     * 上一次处理到的格子，-1表示时间轮空闲
+     */
+    private long currentTick = -1;
+    /**
+     * 已发出的Handler消息对应的格子
+     */
+    private long postedTick = NONE;
+
+    TipTimerWheel(TipViewLayout host) {
+        this.host = host;
+    }
+
+    /**
+     * 设置定时器，若已设置则重新设置
+     * @param timer 定时器
+     * @param delay 延时，单位ms
+     */
+    void schedule(Timer timer, long delay) {
+        cancel(timer);
+        final long now = SystemClock.uptimeMillis();
+        if (currentTick < 0) {
+            currentTick = now / TICK;
+        }
+        timer.deadline = now + Math.max(0, delay);
+        //向上取整，保证不会提前触发
+        long tick = (timer.deadline + TICK - 1) / TICK;
+        if (tick <= currentTick)
+            tick = currentTick + 1;
+        timer.deadlineTick = tick;
+        link(timer);
+        if (tick < postedTick) {
+            post(tick);
+        }
+    }
+
+    void cancel(Timer timer) {
+        if (!timer.scheduled)
+            return;
+        final int slot = (int) (timer.deadlineTick & MASK);
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = timer.next = null;
+        timer.scheduled = false;
+        count--;
+    }
+
+    void cancelAll() {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            Timer t = slots[i];
+            while (t != null) {
+                final Timer next = t.next;
+                t.prev = t.next = null;
+                t.scheduled = false;
+                t = next;
+            }
+            slots[i] = null;
+        }
+        count = 0;
+        currentTick = -1;
+        handler.removeCallbacks(this);
+        postedTick = NONE;
+    }
+
+    private void link(Timer timer) {
+        final int slot = (int) (timer.deadlineTick & MASK);
+        final Timer head = slots[slot];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null)
+            head.prev = timer;
+        slots[slot] = timer;
+        timer.scheduled = true;
+        count++;
+    }
+
+    private void post(long tick) {
+        if (postedTick != NONE)
+            handler.removeCallbacks(this);
+        postedTick = tick;
+        handler.postAtTime(this, tick * TICK);
+    }
+
+    @Override
+    public void run() {
+        postedTick = NONE;
+        final long nowTick = SystemClock.uptimeMillis() / TICK;
+        long from = currentTick + 1;
+        //超过一圈时每个格子只需访问一次
+        if (nowTick - from >= SLOT_COUNT)
+            from = nowTick - SLOT_COUNT + 1;
+        for (long t = from; t <= nowTick; t++) {
+            Timer timer = slots[(int) (t & MASK)];
+            while (timer != null) {
+                final Timer next = timer.next;
+                if (timer.deadlineTick <= nowTick) {
+                    cancel(timer);
+                    expired.add(timer);
+                }
+                timer = next;
+            }
+        }
+        currentTick = nowTick;
+        if (!expired.isEmpty()) {
+            host.beginInvalidateBatch();
+            for (int i = 0, l = expired.size(); i < l; i++) {
+                expired.get(i).onTimeout();
+            }
+            host.endInvalidateBatch();
+            expired.clear();
+        }
+        if (count == 0) {
+            currentTick = -1;
+        } else {
+            //触发时可能设置了新的定时器，需和已有的比较
+            final long next = findNextTick();
+            if (next < postedTick)
+                post(next);
+        }
+    }
+
+    /**
+     * 从当前格子向后查找一圈内最早到期的格子，没有则一圈后再查找
+     */
+    private long findNextTick() {
+        for (int i = 1; i <= SLOT_COUNT; i++) {
+            final long tick = currentTick + i;
+            for (Timer t = slots[(int) (tick & MASK)]; t != null; t = t.next) {
+                if (t.deadlineTick <= tick)
+                    return tick;
+            }
+        }
+        return currentTick + SLOT_COUNT;
+    }
+}
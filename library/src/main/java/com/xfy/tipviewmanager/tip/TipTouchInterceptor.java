@@ -0,0 +1,31 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * {@link TipViewLayout.Host#OVERLAY}模式下接收手势的view，不绘制任何内容
+ * 只有需要处理手势时才添加到容器中，手势交给{@link TipViewLayout}处理
+ */
+final class TipTouchInterceptor extends View {
+    private final TipViewLayout host;
+
+    TipTouchInterceptor(Context context, TipViewLayout host) {
+        super(context);
+        this.host = host;
+        setWillNotDraw(true);
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (host.shouldDeclineTouch(event, 0, 0))
+            return false;
+        return super.dispatchTouchEvent(event);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return host.handleTouchEvent(event);
+    }
+}
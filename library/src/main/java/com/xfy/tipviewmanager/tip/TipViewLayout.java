@@ -3,22 +3,36 @@ package com.xfy.tipviewmanager.tip;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Rect;
+import android.graphics.PixelFormat;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.IBinder;
 import android.os.SystemClock;
 import android.support.annotation.AttrRes;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.support.annotation.StyleRes;
 import android.util.AttributeSet;
-import android.util.DisplayMetrics;
+import android.view.Choreographer;
+import android.view.Gravity;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
 import android.widget.FrameLayout;
 
 import com.xfy.tipviewmanager.TipManager;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 
 /**
  * Created by XiongFangyu on 2017/6/20.
@@ -26,25 +40,183 @@ import java.util.ArrayList;
  * 承载{@link ITip} 的view
  * 放到Activity的根布局，故一个Activity实例只能绑定一个此view
  * {@link TipManager}
+ *
+ * 设置了{@link #setHostContainer(ViewGroup, int)}时，第一个tip加入时才添加到容器中，
+ * 最后一个tip删除后从容器中移除；没有显示中的tip时不参与绘制
+ *
+ * 承载方式 see {@link Host}
  */
 public class TipViewLayout extends FrameLayout implements LayoutListener<NormalTip> {
+
+    public interface Host {
+        int LAYOUT = 0;     //作为子view添加到容器中
+        int OVERLAY = 1;    //绘制在容器的ViewGroupOverlay中，不参与measure、layout，需要处理手势时才添加一个不绘制的view
+        int WINDOW = 2;     //作为容器所在窗口的子窗口，窗口大小为所有显示中tip的并集，tip坐标为窗口坐标
+    }
+
+    @IntDef({Host.LAYOUT, Host.OVERLAY, Host.WINDOW})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface HostMode {
+    }
+
     private static final int MAX_CLICK_TIME = 200;
     private static final int MAX_CLICK_DIS = 100;
+    /**
+     * {@link ITip.Triangle#AUTO}时依次尝试的方向，优先显示在view下方
+     */
+    private static final int[] AUTO_CANDIDATES = {
+            ITip.Triangle.TOP, ITip.Triangle.BOTTOM, ITip.Triangle.LEFT, ITip.Triangle.RIGHT
+    };
+    private static final Comparator<NormalTipInfo> TOP_COMPARATOR = new Comparator<NormalTipInfo>() {
+        @Override
+        public int compare(NormalTipInfo a, NormalTipInfo b) {
+            return a.layoutRect.top < b.layoutRect.top ? -1 : (a.layoutRect.top == b.layoutRect.top ? 0 : 1);
+        }
+    };
 
-    private ArrayList<NormalTipInfo> normalTips;
+    /**
+     * tip到其信息的索引，以对象本身为key
+     */
+    private IdentityHashMap<NormalTip, NormalTipInfo> tipIndex;
+    /**
+     * 按绘制顺序排列的链表头尾，先加入的先绘制
+     */
+    private NormalTipInfo firstTip, lastTip;
 
     private boolean handleEvent = false;
     private boolean touchToHideAll = false;
+    /**
+     * 默认的隐藏策略 see {@link ITip.Dismiss}
+     */
+    private int defaultDismissPolicy = ITip.Dismiss.KEEP;
+    private TipDismissEngine dismissEngine;
+    /**
+     * 是否有可点击的tip，是否有需要按手势隐藏的tip，tip增删或设置改变时重新计算
+     */
+    private boolean interactionDirty = true;
+    private boolean clickableTip = false;
+    private boolean dismissTip = false;
+    /**
+     * 上次更新手势接收状态时是否需要接收手势
+     */
+    private boolean touchNeeded = false;
     private boolean needNotfiyListener = true;
 
     private NormalTip touchedTip = null;
+    /**
+     * 显示中tip的点击检测索引
+     */
+    private final TipHitGrid hitGrid = new TipHitGrid();
+    private final Rect tempHitRect = new Rect();
+    private int tipOrder = 0;
     private float downX, downY;
     private long downTime = 0;
 
-    private int screenWidth;
     private int marginEdge;
     private int tipBackgroundRadiu;
 
+    private final Rect dirtyRect = new Rect();
+    private final Rect tempPlaceRect = new Rect();
+    private final NormalTipInfo tempTipInfo = new NormalTipInfo();
+    /**
+     * 是否避免tip之间重叠
+     * see {@link #setAvoidOverlap(boolean)}
+     */
+    private boolean avoidOverlap = false;
+    private boolean overlapPending = false;
+    private static final int MAX_OVERLAP_PASSES = 4;
+    /**
+     * 每个tip由子view绘制，动画时使用硬件层
+     * see {@link #setLayerAnimation(boolean)}
+     */
+    private boolean layerAnimation = false;
+    /**
+     * 是否录制静止的tip，重绘时回放
+     * see {@link #setRecordStaticTips(boolean)}
+     */
+    private boolean recordStaticTips = false;
+    private final ArrayList<NormalTipInfo> overlapTips = new ArrayList<>();
+    private final ArrayList<NormalTipInfo> fixedTips = new ArrayList<>();
+    /**
+     * 上一次处理重叠后布局改变了的区域，包括改变前后的位置及隐藏、删除的tip
+     */
+    private final Rect overlapRegion = new Rect();
+    /**
+     * 批量刷新时合并的刷新区域
+     */
+    private final Rect batchDirtyRect = new Rect();
+    private int invalidateBatchDepth = 0;
+
+    private final TipAnimationDriver animationDriver = new TipAnimationDriver(this);
+    private final TipTimerWheel timerWheel = new TipTimerWheel(this);
+
+    private ViewGroup hostContainer;
+    private
+    @HostMode
+    int hostMode = Host.LAYOUT;
+    private boolean hostAttached = false;
+    private TipOverlayDrawable overlayDrawable;
+    private TipTouchInterceptor touchInterceptor;
+    private final OnLayoutChangeListener containerLayoutListener = new OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (overlayDrawable != null) {
+                overlayDrawable.setBounds(0, 0, right - left, bottom - top);
+            }
+            //容器大小改变时(eg: 分屏)，重新布局所有tip
+            if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                relayoutTips();
+            }
+        }
+    };
+    /**
+     * {@link Host#WINDOW}模式下子窗口的参数及在父窗口中的位置
+     */
+    private WindowManager.LayoutParams windowParams;
+    private final Rect windowRect = new Rect();
+    private final Rect tempWindowRect = new Rect();
+    private final Rect tempTipRect = new Rect();
+    private boolean windowUpdatePosted = false;
+    private final Choreographer.FrameCallback windowUpdater = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            windowUpdatePosted = false;
+            updateWindow();
+        }
+    };
+    /**
+     * 是否跟踪tip指向的view位置变化
+     * see {@link #setTrackAnchor(boolean)}
+     */
+    private boolean trackAnchor = false;
+    /**
+     * 是否挂起指向的view不可见的tip
+     * see {@link #setCullInvisibleAnchor(boolean)}
+     */
+    private boolean cullAnchor = false;
+    private ViewTreeObserver trackObserver;
+    private final Rect tempAnchorRect = new Rect();
+    private final ViewTreeObserver.OnPreDrawListener anchorTracker = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            trackAnchors();
+            return true;
+        }
+    };
+    /**
+     * 显示中(包括动画中)的tip个数
+     */
+    private int visibleTipCount = 0;
+    private final Runnable detachHostTask = new Runnable() {
+        @Override
+        public void run() {
+            if (firstTip == null) {
+                detachHost();
+            }
+        }
+    };
+
     public TipViewLayout(@NonNull Context context) {
         this(context, null);
     }
@@ -65,9 +237,7 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
     }
 
     private void init(Context context) {
-        setWillNotDraw(false);
-        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
-        screenWidth = displayMetrics.widthPixels;
+        setWillNotDraw(true);
     }
 
     @Override
@@ -75,30 +245,93 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
         super.onMeasure(w, h);
     }
 
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        //绘制tip的子view位置由tip决定
+        for (NormalTipInfo nti = firstTip; nti != null; nti = nti.next) {
+            if (nti.tip.renderView != null)
+                nti.tip.renderView.relayout();
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
-        if (normalTips != null) {
-            for (NormalTipInfo nt : normalTips) {
-                if (nt != null) {
-                    nt.draw(canvas);
-                }
-            }
+        //不切换willNotDraw，切换会引起整个布局重新layout
+        if (visibleTipCount == 0)
+            return;
+        if (hostMode == Host.WINDOW) {
+            //tip坐标为父窗口坐标
+            canvas.translate(-windowRect.left, -windowRect.top);
+            drawTips(canvas);
+            canvas.translate(windowRect.left, windowRect.top);
+            return;
+        }
+        drawTips(canvas);
+    }
+
+    void drawTips(Canvas canvas) {
+        if (getVisibility() != VISIBLE)
+            return;
+        for (NormalTipInfo nt = firstTip; nt != null; nt = nt.next) {
+            nt.draw(canvas, recordStaticTips);
         }
     }
 
     public void setHandleEvent(boolean handle) {
         handleEvent = handle;
+        updateTouchInterceptor();
+    }
+
+    @Override
+    public void setVisibility(int visibility) {
+        super.setVisibility(visibility);
+        if (hostMode == Host.OVERLAY) {
+            invalidateHost(null);
+        }
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (hostMode == Host.WINDOW) {
+            if (shouldDeclineTouch(event, windowRect.left, windowRect.top))
+                return false;
+        } else if (shouldDeclineTouch(event, 0, 0)) {
+            return false;
+        }
+        return super.dispatchTouchEvent(event);
+    }
+
+    /**
+     * 不需要处理手势，且按下的位置不在任何可点击的tip内时，直接不处理此手势
+     * 有tip需要按手势隐藏时，仍需记录按下事件
+     * @param dx 手势坐标到tip坐标的偏移
+     * @param dy 手势坐标到tip坐标的偏移
+     */
+    boolean shouldDeclineTouch(MotionEvent event, int dx, int dy) {
+        if (event.getAction() != MotionEvent.ACTION_DOWN || handleEvent || touchToHideAll || hasDismissTip())
+            return false;
+        final NormalTip tip = hitTest(event.getX() + dx, event.getY() + dy);
+        return tip == null || tip.getOnTipClickListener() == null;
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (normalTips == null || normalTips.isEmpty())
+        if (hostMode == Host.WINDOW) {
+            event.offsetLocation(windowRect.left, windowRect.top);
+            final boolean handled = handleTouchEvent(event);
+            event.offsetLocation(-windowRect.left, -windowRect.top);
+            return handled;
+        }
+        return handleTouchEvent(event);
+    }
+
+    boolean handleTouchEvent(MotionEvent event) {
+        if (firstTip == null)
             return false;
         if (touchToHideAll) {
             hideAllTip();
             return false;
-        } else if (!handleEvent) {
-            return false;
         }
         final float x = event.getX();
         final float y = event.getY();
@@ -107,31 +340,195 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
                 downX = x;
                 downY = y;
                 downTime = SystemClock.uptimeMillis();
-                boolean allHide = true;
-                for (NormalTipInfo nt : normalTips) {
-                    NormalTip tip = nt != null ? nt.tip : null;
-                    if (tip != null && tip.isVisible()) {
-                        allHide = false;
-                        if (tip.isTouched(x, y)) {
-                            touchedTip = tip;
-                            break;
-                        }
-                    }
+                if (dismissEngine != null)
+                    dismissEngine.settle();
+                if (visibleTipCount == 0)
+                    return false;
+                touchedTip = hitTest(x, y);
+                //不处理手势时，只有可点击的tip接收手势
+                final boolean consume = handleEvent
+                        || (touchedTip != null && touchedTip.getOnTipClickListener() != null);
+                if (hasDismissTip()) {
+                    getDismissEngine().onDown(event, touchedTip, consume, hostContainer != null ? hostContainer : this);
                 }
-                if (allHide)
+                if (!consume) {
+                    touchedTip = null;
                     return false;
+                }
+                return true;
+            case MotionEvent.ACTION_OUTSIDE:
+                //WINDOW模式下子窗口以外的按下，之后的事件不会传给子窗口，按穿透的手势处理
+                if (dismissEngine != null)
+                    dismissEngine.settle();
+                if (visibleTipCount > 0 && hasDismissTip()) {
+                    getDismissEngine().onDown(event, null, false, hostContainer != null ? hostContainer : this);
+                }
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                if (dismissEngine != null)
+                    dismissEngine.onMove(event);
                 break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                if (touchedTip == null)
-                    break;
-                if (SystemClock.uptimeMillis() - downTime <= MAX_CLICK_TIME && isClick(x, y)) {
-                    touchedTip.hide(needNotfiyListener);
-                    touchedTip = null;
+                final NormalTip tip = touchedTip;
+                touchedTip = null;
+                boolean scrolled = false;
+                if (dismissEngine != null) {
+                    scrolled = dismissEngine.isScrolled();
+                    if (event.getAction() == MotionEvent.ACTION_UP) {
+                        dismissEngine.onUp(event);
+                    } else {
+                        dismissEngine.cancel();
+                    }
                 }
-                break;
+                if (tip == null)
+                    return handleEvent;
+                if (!scrolled && SystemClock.uptimeMillis() - downTime <= MAX_CLICK_TIME && isClick(x, y)) {
+                    final OnTipClickListener l = tip.getOnTipClickListener();
+                    if (l != null) {
+                        l.onTipClick(tip);
+                    } else {
+                        tip.hideNow(needNotfiyListener);
+                    }
+                }
+                return true;
+        }
+        return handleEvent || touchedTip != null;
+    }
+
+    private TipDismissEngine getDismissEngine() {
+        if (dismissEngine == null)
+            dismissEngine = new TipDismissEngine(this);
+        return dismissEngine;
+    }
+
+    /**
+     * 一个手势判断类型后调用一次，按每个tip的策略隐藏
+     * @param gesture   see {@link TipDismissEngine}
+     * @param touched   按下位置的tip
+     */
+    void applyDismiss(int gesture, NormalTip touched) {
+        final int flag = gesture == TipDismissEngine.GESTURE_SCROLL || gesture == TipDismissEngine.GESTURE_FLING
+                ? ITip.Dismiss.SCROLL : ITip.Dismiss.OUTSIDE_TAP;
+        beginInvalidateBatch();
+        NormalTipInfo nti = firstTip;
+        while (nti != null) {
+            //hide可能回调监听并删除tip，先记录下一个
+            final NormalTipInfo next = nti.next;
+            final NormalTip tip = nti.tip;
+            //点击在tip内时，被点击的tip按点击处理
+            if (tip.isVisible() && !(gesture == TipDismissEngine.GESTURE_TAP_INSIDE && tip == touched)
+                    && (getDismissPolicy(tip) & flag) != 0) {
+                tip.hideNow(needNotfiyListener);
+            }
+            nti = next;
+        }
+        endInvalidateBatch();
+    }
+
+    private int getDismissPolicy(NormalTip tip) {
+        final int policy = tip.getDismissPolicy();
+        return policy == ITip.Dismiss.DEFAULT ? defaultDismissPolicy : policy;
+    }
+
+    /**
+     * 设置tip默认的隐藏策略，tip自己设置了策略时以tip的为准
+     * @param policy see {@link ITip.Dismiss}
+     */
+    public void setDefaultDismissPolicy(int policy) {
+        defaultDismissPolicy = policy;
+        onTipInteractionChanged();
+    }
+
+    /**
+     * 查找包含点的最上层tip
+     */
+    private NormalTip hitTest(float x, float y) {
+        if (ensureHitGrid())
+            return null;
+        final NormalTipInfo info = hitGrid.hitTest((int) x, (int) y);
+        return info != null ? info.tip : null;
+    }
+
+    /**
+     * 容器大小改变后重建网格
+     * @return 网格是否为空
+     */
+    private boolean ensureHitGrid() {
+        final int w = getHostWidth();
+        final int h = getHostHeight();
+        if (hitGrid.isSizeChanged(w, h)) {
+            for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+                info.hitRect.setEmpty();
+            }
+            hitGrid.reset(w, h);
+            for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+                info.tip.getPlacedRect(tempHitRect);
+                hitGrid.update(info, tempHitRect);
+            }
         }
-        return handleEvent;
+        return hitGrid.isEmpty();
+    }
+
+    /**
+     * tip区域或可见性改变时更新点击检测网格
+     */
+    private void updateHitGrid(NormalTipInfo info) {
+        info.tip.getPlacedRect(tempHitRect);
+        if (!tempHitRect.equals(info.hitRect)) {
+            hitGrid.update(info, tempHitRect);
+        }
+    }
+
+    /**
+     * tip的点击监听或隐藏策略改变了，可能需要开始或停止接收手势
+     */
+    void onTipInteractionChanged() {
+        interactionDirty = true;
+        updateTouchInterceptor();
+    }
+
+    private void updateInteraction() {
+        if (!interactionDirty)
+            return;
+        interactionDirty = false;
+        clickableTip = false;
+        dismissTip = false;
+        for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+            if (info.tip.getOnTipClickListener() != null)
+                clickableTip = true;
+            if (getDismissPolicy(info.tip) != ITip.Dismiss.KEEP)
+                dismissTip = true;
+        }
+    }
+
+    private boolean hasClickableTip() {
+        updateInteraction();
+        return clickableTip;
+    }
+
+    /**
+     * 是否有需要按手势隐藏的tip
+     */
+    private boolean hasDismissTip() {
+        updateInteraction();
+        return dismissTip;
+    }
+
+    /**
+     * tip增删后，需要接收手势的状态改变时更新
+     */
+    private void onTipsChanged() {
+        interactionDirty = true;
+        if (hostAttached && needTouch() != touchNeeded)
+            updateTouchInterceptor();
+    }
+
+    /**
+     * 是否需要接收手势
+     */
+    private boolean needTouch() {
+        return handleEvent || touchToHideAll || hasClickableTip() || hasDismissTip();
     }
 
     private boolean isClick(float x, float y) {
@@ -143,12 +540,56 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
     @Override
     public void invalidateDrawable(@NonNull Drawable drawable) {
         if (drawable instanceof NormalTip) {
-            invalidate();
+            invalidateTip((NormalTip) drawable);
             return;
         }
         super.invalidateDrawable(drawable);
     }
 
+    /**
+     * 只刷新tip前后两次绘制区域的并集，避免整层重绘
+     * @param tip
+     */
+    private void invalidateTip(NormalTip tip) {
+        final NormalTipInfo info = tipIndex != null ? tipIndex.get(tip) : null;
+        if (info != null) {
+            updateHitGrid(info);
+            //只有刷新的tip需要重新录制
+            info.pictureDirty = true;
+        }
+        if (tip.renderView != null) {
+            updateRenderView(tip);
+            return;
+        }
+        tip.getDirtyRect(dirtyRect);
+        if (dirtyRect.isEmpty())
+            return;
+        if (invalidateBatchDepth > 0) {
+            batchDirtyRect.union(dirtyRect);
+        } else {
+            invalidateHost(dirtyRect);
+        }
+    }
+
+    /**
+     * 开始合并刷新区域，直到{@link #endInvalidateBatch()}时统一刷新，可嵌套
+     */
+    public void beginInvalidateBatch() {
+        if (invalidateBatchDepth++ == 0) {
+            batchDirtyRect.setEmpty();
+        }
+    }
+
+    public void endInvalidateBatch() {
+        if (invalidateBatchDepth == 1 && overlapPending) {
+            //一批布局结束，统一处理重叠
+            resolveOverlaps();
+        }
+        if (invalidateBatchDepth > 0 && --invalidateBatchDepth == 0 && !batchDirtyRect.isEmpty()) {
+            invalidateHost(batchDirtyRect);
+        }
+    }
+
     @Override
     public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
         if (who instanceof NormalTip) {
@@ -167,6 +608,371 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
         super.unscheduleDrawable(who, what);
     }
 
+    /**
+     * 设置承载此view的容器，设置后由此view自己决定何时添加到容器或从容器中移除
+     * @param container 容器，一般为Activity的根布局
+     */
+    public void setHostContainer(ViewGroup container) {
+        setHostContainer(container, Host.LAYOUT);
+    }
+
+    /**
+     * 设置承载tip的容器及承载方式
+     * @param container 容器，一般为Activity的根布局
+     * @param mode      see {@link Host}
+     */
+    public void setHostContainer(ViewGroup container, @HostMode int mode) {
+        if (hostAttached) {
+            detachHost();
+        }
+        hostContainer = container;
+        hostMode = mode;
+        if (container != null && firstTip != null) {
+            attachHost();
+        }
+    }
+
+    public ViewGroup getHostContainer() {
+        return hostContainer;
+    }
+
+    private void attachHost() {
+        if (hostContainer == null)
+            return;
+        hostContainer.removeCallbacks(detachHostTask);
+        if (hostAttached)
+            return;
+        hostAttached = true;
+        //overlay模式由overlay drawable绘制；其他模式在添加前设置，之后不再改变
+        setWillNotDraw(hostMode == Host.OVERLAY);
+        updateAnchorTracker();
+        hostContainer.addOnLayoutChangeListener(containerLayoutListener);
+        if (hostMode == Host.OVERLAY) {
+            if (overlayDrawable == null) {
+                overlayDrawable = new TipOverlayDrawable(this);
+            }
+            overlayDrawable.setBounds(0, 0, hostContainer.getWidth(), hostContainer.getHeight());
+            hostContainer.getOverlay().add(overlayDrawable);
+            updateTouchInterceptor();
+        } else if (hostMode == Host.WINDOW) {
+            requestWindowUpdate();
+        } else if (getParent() == null) {
+            hostContainer.addView(this, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+    }
+
+    /**
+     * {@link Host#LAYOUT}模式下提前添加到容器中
+     * 之后在绘制前(eg: {@link android.view.ViewTreeObserver.OnPreDrawListener})显示的tip
+     * 不需要等待此view下一次布局，和指向的view在同一帧中显示
+     */
+    public void prepareHost() {
+        if (hostMode == Host.LAYOUT)
+            attachHost();
+    }
+
+    /**
+     * 没有tip时移除提前添加的view
+     */
+    public void releaseHostIfIdle() {
+        if (firstTip == null)
+            detachHostLater();
+    }
+
+    /**
+     * 可能在此view的事件或绘制过程中删除tip，延迟到下一个消息移除
+     * overlay模式下此view不在布局中，通过容器发送消息
+     */
+    private void detachHostLater() {
+        if (hostAttached) {
+            hostContainer.removeCallbacks(detachHostTask);
+            hostContainer.post(detachHostTask);
+        }
+    }
+
+    /**
+     * 立即从容器中移除
+     */
+    public void detachHost() {
+        if (hostContainer != null) {
+            hostContainer.removeCallbacks(detachHostTask);
+            hostContainer.removeOnLayoutChangeListener(containerLayoutListener);
+        }
+        hostAttached = false;
+        updateAnchorTracker();
+        if (dismissEngine != null)
+            dismissEngine.cancel();
+        if (hostMode == Host.OVERLAY && hostContainer != null) {
+            if (overlayDrawable != null) {
+                hostContainer.getOverlay().remove(overlayDrawable);
+            }
+            updateTouchInterceptor();
+            return;
+        }
+        if (hostMode == Host.WINDOW) {
+            if (windowUpdatePosted) {
+                windowUpdatePosted = false;
+                Choreographer.getInstance().removeFrameCallback(windowUpdater);
+            }
+            removeWindow();
+            return;
+        }
+        ViewParent parent = getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).removeView(this);
+        }
+    }
+
+    /**
+     * 设置是否跟踪tip指向的view位置变化
+     * 开启后每一帧绘制前检查所有显示中的tip指向的view，位置或大小变化时移动tip，
+     * 适用于ScrollView、RecyclerView中滑动的view
+     * @param track true: 跟踪
+     */
+    public void setTrackAnchor(boolean track) {
+        if (trackAnchor == track)
+            return;
+        trackAnchor = track;
+        updateAnchorTracker();
+    }
+
+    /**
+     * 设置是否挂起指向的view不可见的tip
+     * 开启后每一帧绘制前检查tip指向的view是否在窗口中且可见，不可见时tip不绘制，动画及自动隐藏暂停，
+     * view重新可见时恢复，适用于列表中滑出屏幕或被回收的view
+     * @param cull true: 挂起
+     */
+    public void setCullInvisibleAnchor(boolean cull) {
+        if (cullAnchor == cull)
+            return;
+        cullAnchor = cull;
+        for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+            info.setWatchAttach(cull);
+            if (!cull)
+                info.tip.setSuspended(false);
+        }
+        updateAnchorTracker();
+    }
+
+    private void updateAnchorTracker() {
+        final boolean need = (trackAnchor || cullAnchor) && hostAttached && hostContainer != null;
+        if (trackObserver != null && (!need || !trackObserver.isAlive())) {
+            if (trackObserver.isAlive()) {
+                trackObserver.removeOnPreDrawListener(anchorTracker);
+            }
+            trackObserver = null;
+        }
+        if (need && trackObserver == null) {
+            trackObserver = hostContainer.getViewTreeObserver();
+            trackObserver.addOnPreDrawListener(anchorTracker);
+        }
+    }
+
+    /**
+     * 检查所有显示中的tip指向的view，挂起或恢复tip，
+     * 并重新获取view的位置，只重新布局位置或大小改变了的tip
+     */
+    private void trackAnchors() {
+        final Rect rect = tempAnchorRect;
+        beginInvalidateBatch();
+        for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+            final TipAnchor anchor = info.anchor;
+            if (anchor == null || !info.tip.isVisible())
+                continue;
+            final boolean visible = anchor.getAnchorRect(rect);
+            if (cullAnchor) {
+                info.tip.setSuspended(!visible);
+                if (!visible)
+                    continue;
+            }
+            if (!trackAnchor || !info.moveAnchor(rect))
+                continue;
+            initNormalTip(info.viewRect, info);
+        }
+        endInvalidateBatch();
+    }
+
+    /**
+     * {@link Host#WINDOW}模式下，在下一帧更新子窗口位置及大小，同一帧内多次调用只更新一次
+     */
+    void requestWindowUpdate() {
+        if (hostMode != Host.WINDOW || !hostAttached || windowUpdatePosted)
+            return;
+        windowUpdatePosted = true;
+        Choreographer.getInstance().postFrameCallback(windowUpdater);
+    }
+
+    /**
+     * 子窗口大小为所有显示中tip的并集，没有显示中的tip时移除子窗口
+     */
+    private void updateWindow() {
+        if (hostMode != Host.WINDOW || !hostAttached)
+            return;
+        final Rect rect = tempWindowRect;
+        rect.setEmpty();
+        for (NormalTipInfo nt = firstTip; nt != null; nt = nt.next) {
+            nt.tip.getPlacedRect(tempTipRect);
+            rect.union(tempTipRect);
+        }
+        if (rect.isEmpty()) {
+            removeWindow();
+            return;
+        }
+        //抗锯齿边缘
+        rect.inset(-2, -2);
+        final IBinder token = getAnchorWindowToken();
+        if (token == null)
+            return;
+        boolean added = getParent() != null;
+        if (added && rect.equals(windowRect) && windowParams.token == token)
+            return;
+        if (added && windowParams.token != token) {
+            //依附的窗口改变，需重新添加
+            getWindowManager().removeViewImmediate(this);
+            added = false;
+        }
+        if (windowParams == null) {
+            windowParams = new WindowManager.LayoutParams(WindowManager.LayoutParams.TYPE_APPLICATION_PANEL);
+            windowParams.gravity = Gravity.LEFT | Gravity.TOP;
+            windowParams.format = PixelFormat.TRANSLUCENT;
+            windowParams.setTitle("TipPanel");
+        }
+        windowParams.token = token;
+        windowParams.flags = getWindowFlags();
+        windowParams.x = rect.left;
+        windowParams.y = rect.top;
+        windowParams.width = rect.width();
+        windowParams.height = rect.height();
+        windowRect.set(rect);
+        for (NormalTipInfo nti = firstTip; nti != null; nti = nti.next) {
+            if (nti.tip.renderView != null)
+                updateRenderView(nti.tip);
+        }
+        final WindowManager wm = getWindowManager();
+        if (added) {
+            wm.updateViewLayout(this, windowParams);
+        } else {
+            wm.addView(this, windowParams);
+        }
+        invalidate();
+    }
+
+    /**
+     * 子窗口依附在tip指向的view所在的窗口上(eg: Dialog中的view)，tip坐标为该窗口中的坐标
+     * 指向不同窗口的tip同时显示时，以最后显示的tip为准；没有指向view的tip时依附在容器所在窗口
+     */
+    private IBinder getAnchorWindowToken() {
+        for (NormalTipInfo nti = lastTip; nti != null; nti = nti.prev) {
+            if (nti.anchor instanceof ViewTipAnchor && nti.tip.isVisible()) {
+                final IBinder token = ((ViewTipAnchor) nti.anchor).getView().getWindowToken();
+                if (token != null)
+                    return token;
+            }
+        }
+        return hostContainer.getWindowToken();
+    }
+
+    /**
+     * 不处理手势时，手势穿透子窗口
+     * 子窗口只覆盖tip区域，需要接收子窗口以外的按下(点击隐藏、按手势隐藏)，
+     * 通过{@link MotionEvent#ACTION_OUTSIDE}接收
+     */
+    private int getWindowFlags() {
+        int flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL
+                | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS;
+        if (!needTouch()) {
+            flags |= WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+        } else {
+            flags |= WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH;
+        }
+        return flags;
+    }
+
+    private void removeWindow() {
+        if (getParent() != null) {
+            getWindowManager().removeViewImmediate(this);
+        }
+        windowRect.setEmpty();
+    }
+
+    private WindowManager getWindowManager() {
+        return (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+    }
+
+    /**
+     * {@link Host#OVERLAY}模式下，只有需要处理手势时才添加接收手势的view
+     */
+    private void updateTouchInterceptor() {
+        touchNeeded = needTouch();
+        if (hostMode == Host.WINDOW) {
+            if (windowParams != null && getParent() != null) {
+                windowParams.flags = getWindowFlags();
+                getWindowManager().updateViewLayout(this, windowParams);
+            }
+            return;
+        }
+        final boolean need = hostMode == Host.OVERLAY && hostAttached && touchNeeded;
+        if (need) {
+            if (touchInterceptor == null) {
+                touchInterceptor = new TipTouchInterceptor(getContext(), this);
+            }
+            if (touchInterceptor.getParent() == null) {
+                hostContainer.addView(touchInterceptor, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                        ViewGroup.LayoutParams.MATCH_PARENT));
+            }
+        } else if (touchInterceptor != null) {
+            ViewParent parent = touchInterceptor.getParent();
+            if (parent instanceof ViewGroup) {
+                ((ViewGroup) parent).removeView(touchInterceptor);
+            }
+        }
+    }
+
+    /**
+     * 刷新承载tip的view
+     * @param rect 刷新区域，为null时全部刷新
+     */
+    private void invalidateHost(Rect rect) {
+        View target = this;
+        if (hostMode == Host.WINDOW && rect != null) {
+            rect.offset(-windowRect.left, -windowRect.top);
+        } else if (hostMode == Host.OVERLAY) {
+            //overlay中的drawable以overlay内部的view为callback
+            final Drawable.Callback callback = overlayDrawable != null ? overlayDrawable.getCallback() : null;
+            if (!(callback instanceof View))
+                return;
+            target = (View) callback;
+        }
+        if (rect != null) {
+            target.invalidate(rect);
+        } else {
+            target.invalidate();
+        }
+    }
+
+    /**
+     * tip显示或隐藏时由{@link NormalTip}调用
+     */
+    void onTipVisibilityChanged(NormalTip tip, boolean visible) {
+        if (visible) {
+            if (visibleTipCount++ == 0)
+                attachHost();
+            final NormalTipInfo info = tipIndex != null ? tipIndex.get(tip) : null;
+            if (info != null)
+                info.overlapDirty = true;
+        } else {
+            if (visibleTipCount > 0)
+                visibleTipCount--;
+            //隐藏后空出的区域，附近被移开的tip可以移回
+            if (avoidOverlap)
+                overlapRegion.union(tip.getBounds());
+        }
+        requestWindowUpdate();
+        requestOverlapPass();
+    }
+
     public void setMarginEdge(int marginEdge) {
         this.marginEdge = marginEdge;
     }
@@ -174,60 +980,161 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
     public void removeTip(ITip tip) {
         if (tip instanceof NormalTip) {
             NormalTip normalTip = (NormalTip) tip;
-            NormalTipInfo tipInfo = new NormalTipInfo(normalTip);
-            if (normalTips != null && normalTips.contains(tipInfo)) {
-                normalTips.remove(tipInfo);
+            NormalTipInfo tipInfo = tipIndex != null ? tipIndex.remove(normalTip) : null;
+            detachRenderView(normalTip);
+            if (tipInfo != null) {
+                unlinkTipInfo(tipInfo);
+                tipInfo.setAnchor(null);
+                tipInfo.releasePicture();
+                hitGrid.remove(tipInfo);
             }
+            if (touchedTip == normalTip)
+                touchedTip = null;
+            if (tipInfo != null)
+                onTipsChanged();
+            normalTip.setVisible(false, false);
             normalTip.release();
             normalTip.setCallback(null);
         }
-        invalidate();
+        if (firstTip == null) {
+            detachHostLater();
+        } else {
+            requestWindowUpdate();
+        }
     }
 
     public void removeAllTip() {
-        if (normalTips != null) {
-            for (NormalTipInfo nti : normalTips) {
-                NormalTip nt = nti != null ? nti.tip : null;
-                if (nt != null) {
-                    nt.release();
-                    nt.setCallback(null);
-                }
+        for (NormalTipInfo nti = firstTip; nti != null; nti = nti.next) {
+            nti.setAnchor(null);
+            NormalTip nt = nti.tip;
+            if (nt != null) {
+                detachRenderView(nt);
+                nt.release();
+                nt.setCallback(null);
             }
-            normalTips.clear();
         }
-        invalidate();
+        firstTip = lastTip = null;
+        if (tipIndex != null) {
+            tipIndex.clear();
+        }
+        hitGrid.clear();
+        touchedTip = null;
+        interactionDirty = true;
+        if (dismissEngine != null)
+            dismissEngine.cancel();
+        animationDriver.cancelAll();
+        timerWheel.cancelAll();
+        visibleTipCount = 0;
+        invalidateHost(null);
+        detachHostLater();
     }
 
     public void hideAllTip() {
-        if (normalTips != null) {
-            for (NormalTipInfo nti : normalTips) {
-                NormalTip tip = nti != null ? nti.tip : null;
-                if (tip != null) {
-                    tip.hide();
-                }
+        NormalTipInfo nti = firstTip;
+        while (nti != null) {
+            //hide可能回调监听并删除tip，先记录下一个
+            final NormalTipInfo next = nti.next;
+            if (nti.tip != null) {
+                nti.tip.hideNow(true);
             }
-            invalidate();
+            nti = next;
         }
     }
 
     private void addTipInfo(NormalTipInfo info) {
-        if (normalTips == null) {
-            normalTips = new ArrayList<>();
+        if (tipIndex == null) {
+            tipIndex = new IdentityHashMap<>();
+        }
+        NormalTipInfo old = tipIndex.put(info.tip, info);
+        if (old != null) {
+            unlinkTipInfo(old);
+        }
+        info.order = ++tipOrder;
+        info.prev = lastTip;
+        info.next = null;
+        if (lastTip != null) {
+            lastTip.next = info;
+        } else {
+            firstTip = info;
+        }
+        lastTip = info;
+        onTipsChanged();
+    }
+
+    private void unlinkTipInfo(NormalTipInfo info) {
+        if (info.prev != null) {
+            info.prev.next = info.next;
+        } else {
+            firstTip = info.next;
+        }
+        if (info.next != null) {
+            info.next.prev = info.prev;
+        } else {
+            lastTip = info.prev;
         }
-        normalTips.add(info);
+        info.prev = info.next = null;
     }
 
     public void addTip(ITip tip, Rect viewRect, int preTx, int preTy, @ITip.TriangleDirection int direction) {
-        if (normalTips == null) {
-            normalTips = new ArrayList<>();
+        addTip(tip, (TipAnchor) null, viewRect, preTx, preTy, direction);
+    }
+
+    /**
+     * 添加tip，并记录tip指向的view，开启{@link #setTrackAnchor(boolean)}时跟随view移动
+     * @param tip
+     * @param anchor    tip指向的view，可为空
+     * @param viewRect  view的位置信息
+     * @param preTx     布局此tip时x移动距离
+     * @param preTy     布局此tip时y移动距离
+     * @param direction 三角形指向方向 see {@link ITip.Triangle}
+     */
+    public void addTip(ITip tip, @Nullable View anchor, Rect viewRect, int preTx, int preTy, @ITip.TriangleDirection int direction) {
+        TipAnchor tipAnchor = null;
+        if (anchor != null) {
+            //同一个view重复显示时复用
+            final NormalTipInfo info = tip instanceof NormalTip && tipIndex != null ? tipIndex.get(tip) : null;
+            if (info != null && info.anchor instanceof ViewTipAnchor
+                    && ((ViewTipAnchor) info.anchor).getView() == anchor) {
+                tipAnchor = info.anchor;
+            } else {
+                tipAnchor = new ViewTipAnchor(anchor);
+            }
         }
+        addTip(tip, tipAnchor, viewRect, preTx, preTy, direction);
+    }
+
+    /**
+     * 添加tip，并记录tip指向的目标，开启{@link #setTrackAnchor(boolean)}时跟随目标移动
+     * @param tip
+     * @param anchor    tip指向的目标，可为空
+     * @param viewRect  目标的位置信息
+     * @param preTx     布局此tip时x移动距离
+     * @param preTy     布局此tip时y移动距离
+     * @param direction 三角形指向方向 see {@link ITip.Triangle}
+     */
+    public void addTip(ITip tip, @Nullable TipAnchor anchor, Rect viewRect, int preTx, int preTy, @ITip.TriangleDirection int direction) {
         if (tip instanceof NormalTip) {
             NormalTip nt = (NormalTip) tip;
-            nt.setCallback(this);
-            nt.setLayoutListener(this);
-            NormalTipInfo tipInfo = new NormalTipInfo(nt, viewRect, preTx, preTy, direction);
-            addTipInfo(tipInfo);
-            initNormalTip(viewRect, tipInfo);
+            NormalTipInfo tipInfo = tipIndex != null ? tipIndex.get(nt) : null;
+            if (tipInfo != null) {
+                //重复显示同一tip，原地更新，参数都没变时不需要重新布局
+                if (!nt.isLayoutDirty() && tipInfo.isSameLayout(viewRect, preTx, preTy, direction))
+                    return;
+                tipInfo.set(viewRect, preTx, preTy, direction);
+            } else {
+                nt.setCallback(this);
+                nt.setLayoutListener(this);
+                nt.setAnimationDriver(animationDriver);
+                nt.setTimerWheel(timerWheel);
+                tipInfo = new NormalTipInfo(nt, new Rect(viewRect), preTx, preTy, direction);
+                addTipInfo(tipInfo);
+                if (layerAnimation)
+                    attachRenderView(nt);
+                attachHost();
+            }
+            tipInfo.setWatchAttach(cullAnchor);
+            tipInfo.setAnchor(anchor);
+            initNormalTip(tipInfo.viewRect, tipInfo);
         }
     }
 
@@ -235,18 +1142,330 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
      * 当tip为{@link NormalTip}时，设置tip位置信息
      * 目前{@link IAdvancedTip}的实现为{@link AdvancedTip}，
      * 是{@link NormalTip}的子类
+     * 方向为{@link ITip.Triangle#AUTO}时，先选出最合适的方向
      * @param viewRect      view的位置信息
      * @param tipInfo       包含tip和其他参数
      */
     private void initNormalTip(Rect viewRect, NormalTipInfo tipInfo) {
         final NormalTip tip = tipInfo.tip;
-        final int direction = tipInfo.direction;
-        final int needWidth = tip.getIntrinsicWidth();
-        final int needHeight = tip.getIntrinsicHeight();
-        final int tw = tip.getTriangleWidth();
-        final int th = tip.getTriangleHeight();
+        final int hostWidth = getHostWidth();
+        final int hostHeight = getHostHeight();
+        int direction = tipInfo.direction;
+        if (direction == ITip.Triangle.AUTO) {
+            direction = pickDirection(viewRect, tipInfo, hostWidth, hostHeight);
+            tip.setTriangleDirection(direction);
+        }
+        final Rect rect = tempPlaceRect;
+        final int margin = placeTip(viewRect, tipInfo, direction, hostWidth, hostHeight, rect);
+        if (avoidOverlap && tip.isVisible())
+            overlapRegion.union(tip.getBounds());
+        tipInfo.naturalRect.set(rect);
+        tipInfo.naturalMargin = margin;
+        tipInfo.overlapDirty = true;
+        tip.applyLayout(rect.left, rect.top, rect.right, rect.bottom, margin);
+        requestWindowUpdate();
+        requestOverlapPass();
+    }
 
-        int left = 0, top = 0, right = 0, bottom = 0;
+    /**
+     * 设置是否录制静止的tip
+     * 开启时每个tip刷新后下一次绘制时录制到{@link android.graphics.Picture}，
+     * 其他view引起的重绘只回放录制内容；动画中的tip及6.0以下的硬件加速画布直接绘制
+     * 每个tip额外保存一份录制内容，tip较多且常因其他view重绘时再开启，默认关闭
+     * @param record true: 录制
+     */
+    public void setRecordStaticTips(boolean record) {
+        if (recordStaticTips == record)
+            return;
+        recordStaticTips = record;
+        if (!record) {
+            for (NormalTipInfo nti = firstTip; nti != null; nti = nti.next) {
+                nti.releasePicture();
+            }
+        }
+    }
+
+    /**
+     * 设置是否以每个tip一个子view加硬件层的方式执行显示隐藏动画
+     * 开启后每个tip由一个子view绘制，动画通过{@link android.view.ViewPropertyAnimator}改变view属性，
+     * 动画期间tip内容只绘制一次到硬件层，每帧不再重新绘制tip；动画仍由主线程推进
+     * {@link com.xfy.tipviewmanager.anim.ITipAnimation}只取开始和结束状态，见{@link TipRenderView}
+     * {@link Host#OVERLAY}模式下此view不在布局中，不生效
+     * @param enable true: 开启
+     */
+    public void setLayerAnimation(boolean enable) {
+        if (layerAnimation == enable)
+            return;
+        layerAnimation = enable;
+        for (NormalTipInfo nti = firstTip; nti != null; nti = nti.next) {
+            if (enable) {
+                attachRenderView(nti.tip);
+            } else {
+                detachRenderView(nti.tip);
+                //结束子view上未完成的动画
+                nti.tip.onRenderAnimationEnd();
+            }
+        }
+        invalidateHost(null);
+    }
+
+    private void attachRenderView(NormalTip tip) {
+        if (hostMode == Host.OVERLAY || tip.renderView != null)
+            return;
+        tip.renderView = new TipRenderView(getContext(), tip);
+        //子view位置由tip决定，直接layout，不需要重新布局整个容器
+        addViewInLayout(tip.renderView, -1, new ViewGroup.LayoutParams(0, 0), true);
+        updateRenderView(tip);
+    }
+
+    private void detachRenderView(NormalTip tip) {
+        final TipRenderView view = tip.renderView;
+        if (view == null)
+            return;
+        tip.renderView = null;
+        view.cancelAnimation();
+        removeViewInLayout(view);
+        invalidate();
+    }
+
+    private void updateRenderView(NormalTip tip) {
+        if (hostMode == Host.WINDOW) {
+            tip.renderView.update(windowRect.left, windowRect.top);
+        } else {
+            tip.renderView.update(0, 0);
+        }
+    }
+
+    /**
+     * 设置是否避免同时显示的tip之间重叠
+     * 开启后每一批布局结束时，在允许的方向上移动重叠的tip(三角形指向上下时左右移动，指向左右时向下移动)，
+     * 三角形仍指向原来的位置
+     * @param avoid true: 避免重叠
+     */
+    public void setAvoidOverlap(boolean avoid) {
+        if (avoidOverlap == avoid)
+            return;
+        avoidOverlap = avoid;
+        if (avoid) {
+            for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+                info.overlapDirty = true;
+            }
+            requestOverlapPass();
+        } else {
+            relayoutTips();
+        }
+    }
+
+    /**
+     * 需要重新处理重叠，不在批量刷新中时立即处理
+     */
+    private void requestOverlapPass() {
+        if (!avoidOverlap)
+            return;
+        overlapPending = true;
+        if (invalidateBatchDepth == 0) {
+            beginInvalidateBatch();
+            endInvalidateBatch();
+        }
+    }
+
+    /**
+     * 只处理布局改变了的tip，及和它们改变前后区域相交的tip，其他显示中的tip只作为障碍不移动
+     * 需处理的tip从原本的位置开始，按top排序后和排在前面的tip及障碍比较，重叠时移动；
+     * 移动后顺序可能改变，重新排序再扫描，直到没有tip移动，最多{@link #MAX_OVERLAP_PASSES}次
+     */
+    private void resolveOverlaps() {
+        overlapPending = false;
+        final ArrayList<NormalTipInfo> list = overlapTips;
+        final ArrayList<NormalTipInfo> fixed = fixedTips;
+        final Rect region = overlapRegion;
+        final int hostWidth = getHostWidth();
+        final int hostHeight = getHostHeight();
+        for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+            if (info.overlapDirty && isOverlapCandidate(info))
+                region.union(info.naturalRect);
+        }
+        for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+            final boolean dirty = info.overlapDirty;
+            info.overlapDirty = false;
+            if (!isOverlapCandidate(info))
+                continue;
+            final Rect bounds = info.tip.getBounds();
+            if (dirty || Rect.intersects(bounds, region) || Rect.intersects(info.naturalRect, region)) {
+                info.layoutRect.set(info.naturalRect);
+                info.layoutMargin = info.naturalMargin;
+                list.add(info);
+            } else {
+                info.layoutRect.set(bounds);
+                fixed.add(info);
+            }
+        }
+        region.setEmpty();
+        final int count = list.size();
+        if (count > 0 && count + fixed.size() > 1) {
+            for (int pass = 0; pass < MAX_OVERLAP_PASSES; pass++) {
+                Collections.sort(list, TOP_COMPARATOR);
+                boolean moved = false;
+                for (int i = 0; i < count; i++) {
+                    final NormalTipInfo info = list.get(i);
+                    if (separate(info, fixed, fixed.size(), hostWidth, hostHeight))
+                        moved = true;
+                    if (separate(info, list, i, hostWidth, hostHeight))
+                        moved = true;
+                }
+                if (!moved)
+                    break;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            final NormalTipInfo info = list.get(i);
+            final Rect r = info.layoutRect;
+            info.tip.applyLayout(r.left, r.top, r.right, r.bottom, info.layoutMargin);
+        }
+        list.clear();
+        fixed.clear();
+        requestWindowUpdate();
+    }
+
+    private static boolean isOverlapCandidate(NormalTipInfo info) {
+        final NormalTip tip = info.tip;
+        return tip.isVisible() && !tip.isSuspended() && !tip.getBounds().isEmpty();
+    }
+
+    /**
+     * 和others中前end个tip比较，重叠时移动info
+     * @return 是否移动
+     */
+    private boolean separate(NormalTipInfo info, ArrayList<NormalTipInfo> others, int end, int hostWidth, int hostHeight) {
+        final Rect r = info.layoutRect;
+        boolean moved = false;
+        //移动后可能和之前比较过的tip重叠，最多重新比较end次
+        int retry = end;
+        for (int j = 0; j < end; j++) {
+            final Rect other = others.get(j).layoutRect;
+            if (Rect.intersects(r, other) && shiftTip(info, other, hostWidth, hostHeight)) {
+                moved = true;
+                if (retry-- > 0)
+                    j = -1;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * 在允许的方向上移动tip，使其不和other重叠，三角形仍需在tip内
+     * @return 是否移动
+     */
+    private boolean shiftTip(NormalTipInfo info, Rect other, int hostWidth, int hostHeight) {
+        final Rect r = info.layoutRect;
+        final int direction = info.tip.getTriangleDirection();
+        final int arrowSize = info.tip.getArrowBaseSize(direction);
+        if (direction == ITip.Triangle.TOP || direction == ITip.Triangle.BOTTOM) {
+            final int toRight = other.right - r.left;
+            final int toLeft = other.left - r.right;
+            final int first = toRight < -toLeft ? toRight : toLeft;
+            final int second = first == toRight ? toLeft : toRight;
+            return shiftTipX(info, first, arrowSize, hostWidth) || shiftTipX(info, second, arrowSize, hostWidth);
+        }
+        final int dy = other.bottom - r.top;
+        if (r.bottom + dy > hostHeight)
+            return false;
+        final int margin = info.layoutMargin - dy;
+        if (direction != ITip.Triangle.NONE
+                && (margin < tipBackgroundRadiu || margin > r.height() - tipBackgroundRadiu - arrowSize))
+            return false;
+        r.offset(0, dy);
+        info.layoutMargin = margin;
+        return true;
+    }
+
+    private boolean shiftTipX(NormalTipInfo info, int dx, int arrowSize, int hostWidth) {
+        final Rect r = info.layoutRect;
+        if (r.left + dx < marginEdge || r.right + dx > hostWidth - marginEdge)
+            return false;
+        final int margin = info.layoutMargin - dx;
+        if (margin < tipBackgroundRadiu || margin > r.width() - tipBackgroundRadiu - arrowSize)
+            return false;
+        r.offset(dx, 0);
+        info.layoutMargin = margin;
+        return true;
+    }
+
+    /**
+     * 为还未添加的tip选择方向，用于不能在布局时改变方向的情况(eg: 使用了自定义三角形drawable)
+     * @param tip       需要显示的tip，文字等信息已设置
+     * @param viewRect  view的位置信息
+     * @param preTx     布局此tip时x移动距离
+     * @param preTy     布局此tip时y移动距离
+     * @return 最合适的方向 see {@link ITip.Triangle}
+     */
+    public
+    @ITip.TriangleDirection
+    int pickDirection(ITip tip, Rect viewRect, int preTx, int preTy) {
+        if (!(tip instanceof NormalTip))
+            return ITip.Triangle.TOP;
+        final NormalTipInfo info = tempTipInfo;
+        info.tip = (NormalTip) tip;
+        info.translateX = preTx;
+        info.translateY = preTy;
+        final int direction = pickDirection(viewRect, info, getHostWidth(), getHostHeight());
+        info.tip = null;
+        return direction;
+    }
+
+    /**
+     * 依次计算4个方向的位置，选择超出容器面积最小的方向
+     * 当前方向完全在容器内时不改变方向，避免来回切换
+     * 文字大小已缓存，不会重新测量
+     */
+    private int pickDirection(Rect viewRect, NormalTipInfo tipInfo, int hostWidth, int hostHeight) {
+        final Rect rect = tempPlaceRect;
+        final int current = tipInfo.tip.getTriangleDirection();
+        if (current != ITip.Triangle.NONE) {
+            placeTip(viewRect, tipInfo, current, hostWidth, hostHeight, rect);
+            if (getOverflow(rect, hostWidth, hostHeight) == 0)
+                return current;
+        }
+        int best = AUTO_CANDIDATES[0];
+        long bestOverflow = Long.MAX_VALUE;
+        for (int d : AUTO_CANDIDATES) {
+            placeTip(viewRect, tipInfo, d, hostWidth, hostHeight, rect);
+            final long overflow = getOverflow(rect, hostWidth, hostHeight);
+            if (overflow < bestOverflow) {
+                bestOverflow = overflow;
+                best = d;
+                if (overflow == 0)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * tip超出容器的面积
+     */
+    private static long getOverflow(Rect rect, int hostWidth, int hostHeight) {
+        final int vw = Math.max(0, Math.min(rect.right, hostWidth) - Math.max(rect.left, 0));
+        final int vh = Math.max(0, Math.min(rect.bottom, hostHeight) - Math.max(rect.top, 0));
+        return (long) rect.width() * rect.height() - (long) vw * vh;
+    }
+
+    /**
+     * 计算tip在direction方向上的位置
+     * 垂直于指向的方向上限制在容器内(距离左右边缘至少{@link #marginEdge})
+     * @param out   tip位置
+     * @return 三角形边距
+     */
+    private int placeTip(Rect viewRect, NormalTipInfo tipInfo, int direction, int hostWidth, int hostHeight, Rect out) {
+        final NormalTip tip = tipInfo.tip;
+        final int depth = tip.getArrowDepth(direction);
+        final int arrowSize = tip.getArrowBaseSize(direction);
+        final boolean vertical = direction == ITip.Triangle.TOP || direction == ITip.Triangle.BOTTOM;
+        final boolean horizontal = direction == ITip.Triangle.LEFT || direction == ITip.Triangle.RIGHT;
+        final int needWidth = tip.getContentWidth() + (horizontal ? depth : 0);
+        final int needHeight = tip.getContentHeight() + (vertical ? depth : 0);
+
+        int left, top, right, bottom;
         int margin = 0;
         switch (direction) {
             case ITip.Triangle.TOP:
@@ -254,7 +1473,7 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
                 int centerX = viewRect.centerX() + tipInfo.translateX;
                 left = centerX - (needWidth >> 1);
                 right = centerX + (needWidth >> 1);
-                final int maxRight = screenWidth - marginEdge;
+                final int maxRight = hostWidth - marginEdge;
                 if (left < marginEdge) {
                     left = marginEdge;
                     right = left + needWidth;
@@ -272,12 +1491,14 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
                     top = viewRect.top - needHeight + tipInfo.translateY;
                 }
                 bottom = top + needHeight;
-                margin = centerX - left - (tw >> 1);
+                margin = centerX - left - (arrowSize >> 1);
                 break;
             case ITip.Triangle.LEFT:
             case ITip.Triangle.RIGHT:
                 int centerY = viewRect.centerY() + tipInfo.translateY;
                 top = centerY - (needHeight >> 1);
+                if (top + needHeight > hostHeight)
+                    top = hostHeight - needHeight;
                 top = top < 0 ? 0 : top;
                 bottom = top + needHeight;
                 if (direction == ITip.Triangle.LEFT) {
@@ -286,7 +1507,7 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
                     left = viewRect.left - needWidth + tipInfo.translateX;
                 }
                 right = left + needWidth;
-                margin = centerY - top - (th >> 1);
+                margin = centerY - top - (arrowSize >> 1);
                 break;
             default:
                 left = viewRect.centerX() - (needWidth >> 1) + tipInfo.translateX;
@@ -298,28 +1519,63 @@ public class TipViewLayout extends FrameLayout implements LayoutListener<NormalT
         if (margin < tipBackgroundRadiu) {
             margin = tipBackgroundRadiu;
         } else {
-            int maxMargin = right - left - tipBackgroundRadiu - tw;
+            final int length = horizontal ? bottom - top : right - left;
+            int maxMargin = length - tipBackgroundRadiu - arrowSize;
             if (margin > maxMargin)
                 margin = maxMargin;
         }
-        tip.setTriangleMargin(margin);
-        tip.setBounds(left, top, right, bottom);
+        out.set(left, top, right, bottom);
+        return margin;
+    }
+
+    /**
+     * 容器当前宽度，容器还没有布局时使用屏幕宽度
+     */
+    private int getHostWidth() {
+        if (hostContainer != null && hostContainer.getWidth() > 0)
+            return hostContainer.getWidth();
+        if (getWidth() > 0)
+            return getWidth();
+        return getResources().getDisplayMetrics().widthPixels;
+    }
+
+    /**
+     * 容器当前高度，容器还没有布局时使用屏幕高度
+     */
+    private int getHostHeight() {
+        if (hostContainer != null && hostContainer.getHeight() > 0)
+            return hostContainer.getHeight();
+        if (getHeight() > 0)
+            return getHeight();
+        return getResources().getDisplayMetrics().heightPixels;
+    }
+
+    /**
+     * 重新布局所有tip
+     */
+    private void relayoutTips() {
+        beginInvalidateBatch();
+        for (NormalTipInfo info = firstTip; info != null; info = info.next) {
+            initNormalTip(info.viewRect, info);
+        }
+        endInvalidateBatch();
     }
 
     @Override
     public void reqeustLayout(NormalTip tip) {
-        if (normalTips != null) {
-            NormalTipInfo info = new NormalTipInfo(tip);
-            int index = normalTips.indexOf(info);
-            if (index >= 0) {
-                info = normalTips.get(index);
-                initNormalTip(info.viewRect, info);
-            }
+        NormalTipInfo info = tipIndex != null ? tipIndex.get(tip) : null;
+        if (info != null) {
+            initNormalTip(info.viewRect, info);
         }
     }
 
+    /**
+     * 设置按下时隐藏所有tip(包括按下的tip)，手势不被消耗
+     * 开启后优先于{@link ITip.Dismiss}策略
+     */
     public void setTouchToHideAll(boolean touchToHideAll) {
         this.touchToHideAll = touchToHideAll;
+        updateTouchInterceptor();
     }
 
     public void setTouchHideNeedNotify(boolean notify) {
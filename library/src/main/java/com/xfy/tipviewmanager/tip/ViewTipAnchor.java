@@ -0,0 +1,44 @@
+package com.xfy.tipviewmanager.tip;
+
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * 指向一个view的{@link TipAnchor}
+ */
+public class ViewTipAnchor implements TipAnchor {
+    private final View view;
+    private final int[] location = new int[2];
+    /**
+     * view可见区域的缓存，检查是否可见时复用
+     */
+    private final Rect visibleRect = new Rect();
+    /**
+     * 是否检查view可见，只在开启{@link TipViewLayout#setCullInvisibleAnchor(boolean)}时检查
+     */
+    private boolean checkVisible = false;
+
+    public ViewTipAnchor(View view) {
+        this.view = view;
+    }
+
+    public View getView() {
+        return view;
+    }
+
+    void setCheckVisible(boolean check) {
+        checkVisible = check;
+    }
+
+    /**
+     * 不检查可见性时只读取位置，总是返回true
+     */
+    @Override
+    public boolean getAnchorRect(Rect out) {
+        view.getLocationInWindow(location);
+        out.set(location[0], location[1], location[0] + view.getWidth(), location[1] + view.getHeight());
+        if (!checkVisible)
+            return true;
+        return view.getWindowToken() != null && view.isShown() && view.getGlobalVisibleRect(visibleRect);
+    }
+}
@@ -37,11 +37,19 @@ public class BottomTriangleDrawable extends TriangleDrawable {
 
         @Override
         protected int[] getPoint(Rect rect) {
-            return new int[] {
-                    rect.left, rect.top,
-                    rect.right, rect.top,
-                    rect.centerX(), rect.bottom
-            };
+            final int[] out = new int[6];
+            getPoint(rect, out);
+            return out;
+        }
+
+        @Override
+        protected void getPoint(Rect rect, int[] out) {
+            out[0] = rect.left;
+            out[1] = rect.top;
+            out[2] = rect.right;
+            out[3] = rect.top;
+            out[4] = rect.centerX();
+            out[5] = rect.bottom;
         }
     }
 }
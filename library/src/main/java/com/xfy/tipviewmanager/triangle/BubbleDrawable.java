@@ -0,0 +1,326 @@
+package com.xfy.tipviewmanager.triangle;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.xfy.tipviewmanager.tip.ITip;
+
+/**
+ * 背景和三角形合一的气泡，整个形状是一条Path，一次drawPath绘制
+ * Path相对于bounds左上角构建，只有大小、圆角、三角形位置或方向改变时才重新构建
+ *
+ * 颜色、圆角及三角形大小保存在{@link ConstantState}中，由其创建的drawable共享
+ * 三角形方向及位置由各个drawable自己保存
+ */
+public class BubbleDrawable extends Drawable {
+    private static final int ARROW_WIDTH = 60;
+    private static final int ARROW_HEIGHT = 30;
+
+    private final Paint mPaint;
+    private final BS bs;
+    private int alpha = 255;
+
+    private
+    @ITip.TriangleDirection
+    int direction = ITip.Triangle.NONE;
+    private int arrowOffset;
+
+    /**
+     * 画笔当前使用的颜色，{@link BS}中的颜色被其他drawable修改后在绘制时同步
+     */
+    private int paintColor;
+
+    private final Path path = new Path();
+    private final RectF arcRect = new RectF();
+    private boolean pathValid = false;
+    private int pathWidth, pathHeight, pathRadius, pathOffset, pathDirection;
+
+    public BubbleDrawable() {
+        this(new BS());
+    }
+
+    protected BubbleDrawable(BS bs) {
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setStyle(Paint.Style.FILL);
+        this.bs = bs;
+        updatePaintColor();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty())
+            return;
+        ensurePath(bounds);
+        if (paintColor != bs.color)
+            syncPaintColor();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.drawPath(path, mPaint);
+        canvas.translate(-bounds.left, -bounds.top);
+    }
+
+    @Override
+    public void setAlpha(@IntRange(from = 0, to = 255) int alpha) {
+        if (this.alpha == alpha)
+            return;
+        this.alpha = alpha;
+        updatePaintColor();
+    }
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * 设置颜色，由此drawable的{@link ConstantState}创建的drawable共享
+     * @param color 气泡颜色
+     * @return this object
+     */
+    public BubbleDrawable setColor(int color) {
+        bs.color = color;
+        updatePaintColor();
+        return this;
+    }
+
+    /**
+     * 设置圆角半径，由此drawable的{@link ConstantState}创建的drawable共享
+     * @param radius px
+     * @return this object
+     */
+    public BubbleDrawable setRadius(int radius) {
+        bs.radius = radius;
+        invalidateSelf();
+        return this;
+    }
+
+    public int getColor() {
+        return bs.color;
+    }
+
+    public int getRadius() {
+        return bs.radius;
+    }
+
+    /**
+     * 设置三角形大小，由此drawable的{@link ConstantState}创建的drawable共享
+     * @param width     三角形底边长度
+     * @param height    三角形高
+     * @return this object
+     */
+    public BubbleDrawable setArrowSize(int width, int height) {
+        bs.arrowWidth = width;
+        bs.arrowHeight = height;
+        invalidateSelf();
+        return this;
+    }
+
+    /**
+     * 设置三角形方向，see {@link ITip.Triangle}
+     */
+    public void setDirection(@ITip.TriangleDirection int direction) {
+        this.direction = direction;
+    }
+
+    public
+    @ITip.TriangleDirection
+    int getDirection() {
+        return direction;
+    }
+
+    /**
+     * 设置三角形距离左边(指向上下时)或上边(指向左右时)的距离
+     */
+    public void setArrowOffset(int offset) {
+        this.arrowOffset = offset;
+    }
+
+    /**
+     * 三角形在当前方向上占据的宽度
+     */
+    public int getArrowWidth() {
+        switch (direction) {
+            case ITip.Triangle.LEFT:
+            case ITip.Triangle.RIGHT:
+                return bs.arrowHeight;
+            case ITip.Triangle.TOP:
+            case ITip.Triangle.BOTTOM:
+                return bs.arrowWidth;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 三角形在当前方向上占据的高度
+     */
+    public int getArrowHeight() {
+        switch (direction) {
+            case ITip.Triangle.LEFT:
+            case ITip.Triangle.RIGHT:
+                return bs.arrowWidth;
+            case ITip.Triangle.TOP:
+            case ITip.Triangle.BOTTOM:
+                return bs.arrowHeight;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 三角形底边长度，与方向无关
+     */
+    public int getArrowBaseSize() {
+        return bs.arrowWidth;
+    }
+
+    /**
+     * 三角形的高，即三角形占据的气泡外的距离，与方向无关
+     */
+    public int getArrowDepth() {
+        return bs.arrowHeight;
+    }
+
+    @Nullable
+    @Override
+    public ConstantState getConstantState() {
+        return bs;
+    }
+
+    private void updatePaintColor() {
+        syncPaintColor();
+        invalidateSelf();
+    }
+
+    private void syncPaintColor() {
+        final int color = bs.color;
+        paintColor = color;
+        final int a = (color >>> 24) * alpha / 255;
+        mPaint.setColor((color & 0x00ffffff) | (a << 24));
+    }
+
+    private void ensurePath(Rect bounds) {
+        final int w = bounds.width();
+        final int h = bounds.height();
+        if (pathValid && pathWidth == w && pathHeight == h && pathRadius == bs.radius
+                && pathOffset == arrowOffset && pathDirection == direction)
+            return;
+        pathWidth = w;
+        pathHeight = h;
+        pathRadius = bs.radius;
+        pathOffset = arrowOffset;
+        pathDirection = direction;
+        pathValid = true;
+        buildPath(w, h);
+    }
+
+    /**
+     * 沿顺时针方向构建圆角矩形，并在对应的边上插入三角形
+     */
+    private void buildPath(int w, int h) {
+        final Path p = path;
+        p.rewind();
+        final int aw = bs.arrowWidth;
+        final int ah = bs.arrowHeight;
+        float l = 0, t = 0, r = w, b = h;
+        switch (direction) {
+            case ITip.Triangle.LEFT:
+                l += ah;
+                break;
+            case ITip.Triangle.TOP:
+                t += ah;
+                break;
+            case ITip.Triangle.RIGHT:
+                r -= ah;
+                break;
+            case ITip.Triangle.BOTTOM:
+                b -= ah;
+                break;
+        }
+        final float radius = Math.max(0, Math.min(bs.radius, Math.min(r - l, b - t) / 2));
+        final float d = radius * 2;
+        final boolean horizontal = direction == ITip.Triangle.TOP || direction == ITip.Triangle.BOTTOM;
+        final float edge = horizontal ? r - l : b - t;
+        final float offset = Math.max(0, Math.min(arrowOffset, edge - aw));
+
+        p.moveTo(l + radius, t);
+        if (direction == ITip.Triangle.TOP) {
+            p.lineTo(l + offset, t);
+            p.lineTo(l + offset + aw / 2f, 0);
+            p.lineTo(l + offset + aw, t);
+        }
+        p.lineTo(r - radius, t);
+        if (radius > 0) {
+            arcRect.set(r - d, t, r, t + d);
+            p.arcTo(arcRect, 270, 90, false);
+        }
+        if (direction == ITip.Triangle.RIGHT) {
+            p.lineTo(r, t + offset);
+            p.lineTo(w, t + offset + aw / 2f);
+            p.lineTo(r, t + offset + aw);
+        }
+        p.lineTo(r, b - radius);
+        if (radius > 0) {
+            arcRect.set(r - d, b - d, r, b);
+            p.arcTo(arcRect, 0, 90, false);
+        }
+        if (direction == ITip.Triangle.BOTTOM) {
+            p.lineTo(l + offset + aw, b);
+            p.lineTo(l + offset + aw / 2f, h);
+            p.lineTo(l + offset, b);
+        }
+        p.lineTo(l + radius, b);
+        if (radius > 0) {
+            arcRect.set(l, b - d, l + d, b);
+            p.arcTo(arcRect, 90, 90, false);
+        }
+        if (direction == ITip.Triangle.LEFT) {
+            p.lineTo(l, t + offset + aw);
+            p.lineTo(0, t + offset + aw / 2f);
+            p.lineTo(l, t + offset);
+        }
+        p.lineTo(l, t + radius);
+        if (radius > 0) {
+            arcRect.set(l, t, l + d, t + d);
+            p.arcTo(arcRect, 180, 90, false);
+        }
+        p.close();
+    }
+
+    protected static class BS extends ConstantState {
+        private int color;
+        private int radius;
+        private int arrowWidth = ARROW_WIDTH;
+        private int arrowHeight = ARROW_HEIGHT;
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new BubbleDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+}
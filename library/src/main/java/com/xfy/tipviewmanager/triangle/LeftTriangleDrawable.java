@@ -36,11 +36,19 @@ public class LeftTriangleDrawable extends TriangleDrawable {
 
         @Override
         protected int[] getPoint(Rect rect) {
-            return new int[] {
-                    rect.right, rect.top,
-                    rect.right, rect.bottom,
-                    rect.left, rect.centerY()
-            };
+            final int[] out = new int[6];
+            getPoint(rect, out);
+            return out;
+        }
+
+        @Override
+        protected void getPoint(Rect rect, int[] out) {
+            out[0] = rect.right;
+            out[1] = rect.top;
+            out[2] = rect.right;
+            out[3] = rect.bottom;
+            out[4] = rect.left;
+            out[5] = rect.centerY();
         }
     }
 }
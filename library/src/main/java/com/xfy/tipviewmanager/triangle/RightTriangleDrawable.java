@@ -37,11 +37,19 @@ public class RightTriangleDrawable extends TriangleDrawable {
 
         @Override
         protected int[] getPoint(Rect rect) {
-            return new int[] {
-                    rect.left, rect.top,
-                    rect.left, rect.bottom,
-                    rect.right, rect.centerY()
-            };
+            final int[] out = new int[6];
+            getPoint(rect, out);
+            return out;
+        }
+
+        @Override
+        protected void getPoint(Rect rect, int[] out) {
+            out[0] = rect.left;
+            out[1] = rect.top;
+            out[2] = rect.left;
+            out[3] = rect.bottom;
+            out[4] = rect.right;
+            out[5] = rect.centerY();
         }
     }
 }
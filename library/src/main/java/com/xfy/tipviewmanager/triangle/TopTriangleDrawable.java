@@ -37,11 +37,19 @@ public class TopTriangleDrawable extends TriangleDrawable {
 
         @Override
         protected int[] getPoint(Rect rect) {
-            return new int[] {
-                    rect.left, rect.bottom,
-                    rect.right, rect.bottom,
-                    rect.centerX(), rect.top
-            };
+            final int[] out = new int[6];
+            getPoint(rect, out);
+            return out;
+        }
+
+        @Override
+        protected void getPoint(Rect rect, int[] out) {
+            out[0] = rect.left;
+            out[1] = rect.bottom;
+            out[2] = rect.right;
+            out[3] = rect.bottom;
+            out[4] = rect.centerX();
+            out[5] = rect.top;
         }
     }
 }
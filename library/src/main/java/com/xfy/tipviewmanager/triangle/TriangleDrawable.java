@@ -21,6 +21,11 @@ public abstract class TriangleDrawable extends Drawable {
     private static final int HEIGHT = 30;
     private Paint mPaint;
     private CS cs;
+    /**
+     * 每个drawable持有自己的path，只在bounds改变时重新计算
+     */
+    private final Path path = new Path();
+    private final int[] points = new int[6];
 
     public TriangleDrawable() {
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -41,11 +46,19 @@ public abstract class TriangleDrawable extends Drawable {
 
     @Override
     public void draw(@NonNull Canvas canvas) {
-        Rect bounds = getBounds();
-        cs.initPath(bounds);
-        canvas.save();
-        canvas.drawPath(cs.path, mPaint);
-        canvas.restore();
+        canvas.drawPath(path, mPaint);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        path.rewind();
+        if (bounds.isEmpty())
+            return;
+        cs.getPoint(bounds, points);
+        path.moveTo(points[0], points[1]);
+        path.lineTo(points[2], points[3]);
+        path.lineTo(points[4], points[5]);
+        path.close();
     }
 
     @Override
@@ -91,6 +104,9 @@ public abstract class TriangleDrawable extends Drawable {
     }
 
     protected abstract static class CS extends ConstantState {
+        /**
+         * 绘制使用每个drawable自己的path，此处只为兼容已有子类保留
+         */
         protected Path path;
         private int color;
         public CS() {
@@ -98,15 +114,23 @@ public abstract class TriangleDrawable extends Drawable {
                 path = new Path();
         }
 
-        private void initPath(Rect rect) {
-            path.reset();
-            int[] points = getPoint(rect);
-            path.moveTo(points[0], points[1]);
-            path.lineTo(points[2], points[3]);
-            path.lineTo(points[4], points[5]);
-            path.close();
+        /**
+         * 计算三角形三个顶点，绘制时调用，不创建数组
+         * 默认复制{@link #getPoint(Rect)}的结果，兼容只实现了该方法的子类
+         * @param rect 三角形区域
+         * @param out  依次输出三个顶点的x,y坐标，长度为6
+         */
+        protected void getPoint(Rect rect, int[] out) {
+            final int[] points = getPoint(rect);
+            System.arraycopy(points, 0, out, 0, 6);
         }
 
+        /**
+         * 计算三角形三个顶点，每次返回新的数组
+         * 子类同时重写{@link #getPoint(Rect, int[])}时，绘制不再调用此方法
+         * @param rect 三角形区域
+         * @return 依次为三个顶点的x,y坐标
+         */
         protected abstract int[] getPoint(Rect rect);
 
         @Override